@@ -0,0 +1,42 @@
+package webdata;
+
+/***
+ * Iterates over all the reviews of the index, from 1 to the number of reviews. Used for queries that only
+ * exclude reviews, such as "NOT word".
+ */
+public class AllDocsIterator implements DocIterator {
+    private final int reviews;
+    private int doc;
+
+    /***
+     * @param reviews - The number of reviews in the index
+     */
+    public AllDocsIterator(int reviews) {
+        this.reviews = reviews;
+        doc = -1;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance( doc + 1 );
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        doc = Math.max( target, 1 ) <= reviews ? Math.max( target, 1 ) : NO_MORE_DOCS;
+        return doc;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int cost() {
+        return reviews;
+    }
+}
@@ -0,0 +1,32 @@
+package webdata;
+
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+/***
+ * Enumerates the integers of an array, such as a posting list decoded by a PostingCache.
+ */
+public class ArrayEnumeration implements Enumeration<Integer> {
+    private final int[] values;
+    private int next;
+
+    /***
+     * @param values - The integers to enumerate, which are not copied
+     */
+    public ArrayEnumeration(int[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public boolean hasMoreElements() {
+        return next < values.length;
+    }
+
+    @Override
+    public Integer nextElement() {
+        if (next == values.length) {
+            throw new NoSuchElementException();
+        }
+        return values[next++];
+    }
+}
@@ -0,0 +1,192 @@
+package webdata;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the lookups of an IndexReader on an I/O executor and returns their results as CompletableFutures,
+ * so the calling thread never waits for the index files to be read
+ * The posting lists are decoded whole on the executor, so the enumerations the futures complete with do not
+ * read the index files either. The reads of the tokens of a multi-token request are run in parallel.
+ * <p>
+ * At most maxOutstanding requests can be incomplete at a time, as backpressure: a request made while that
+ * many are incomplete is not queued, and its future fails at once with RejectedExecutionException
+ */
+public class AsyncIndexReader implements AutoCloseable {
+    private final IndexReader reader;
+    private final Executor executor;
+    private final ExecutorService ownExecutor; // the executor this reader created and shuts down, or null
+    private final Semaphore outstanding;
+    private final int maxOutstanding;
+
+    /**
+     * Creates an AsyncIndexReader with its own pool of ioThreads daemon threads, shut down by close()
+     */
+    public AsyncIndexReader(IndexReader reader, int ioThreads, int maxOutstanding) {
+        this( reader, Executors.newFixedThreadPool( ioThreads, daemonThreads() ), maxOutstanding, true );
+    }
+
+    /**
+     * Creates an AsyncIndexReader which runs the lookups on the given executor, which is not shut down by
+     * close()
+     */
+    public AsyncIndexReader(IndexReader reader, Executor executor, int maxOutstanding) {
+        this( reader, executor, maxOutstanding, false );
+    }
+
+    private AsyncIndexReader(IndexReader reader, Executor executor, int maxOutstanding, boolean ownsExecutor) {
+        if (maxOutstanding < 1) {
+            throw new IllegalArgumentException( "The max outstanding requests must be positive" );
+        }
+        this.reader = reader;
+        this.executor = executor;
+        this.ownExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        this.maxOutstanding = maxOutstanding;
+        outstanding = new Semaphore( maxOutstanding );
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread( task, "index-io-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        };
+    }
+
+    /**
+     * Returns the IndexReader the lookups are run on
+     */
+    public IndexReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Returns the ids and frequencies IndexReader.getReviewsWithToken returns for a given token
+     */
+    public CompletableFuture<Enumeration<Integer>> getReviewsWithToken(String token) {
+        return submit( () -> new ArrayEnumeration( reader.decodeReviewsWithToken( token ) ) );
+    }
+
+    /**
+     * Returns the ids and frequencies IndexReader.getReviewsWithToken returns for each of the given tokens,
+     * in the order of the tokens, reading the posting lists of the tokens in parallel
+     * The tokens count as one outstanding request
+     */
+    public CompletableFuture<Map<String, Enumeration<Integer>>> getReviewsWithTokens(Collection<String> tokens) {
+        if (!outstanding.tryAcquire()) {
+            return rejected();
+        }
+        Map<String, CompletableFuture<int[]>> reads = new LinkedHashMap<>();
+        try {
+            for (String token : tokens) {
+                if (!reads.containsKey( token )) {
+                    reads.put( token, CompletableFuture.supplyAsync( () -> reader.decodeReviewsWithToken( token ),
+                            executor ) );
+                }
+            }
+        } catch (RuntimeException e) { // the executor rejected a read
+            CompletableFuture.allOf( reads.values().toArray( new CompletableFuture<?>[0] ) )
+                    .whenComplete( (ignored, error) -> outstanding.release() );
+            return CompletableFuture.failedFuture( e );
+        }
+        CompletableFuture<Map<String, Enumeration<Integer>>> result = new CompletableFuture<>();
+        CompletableFuture.allOf( reads.values().toArray( new CompletableFuture<?>[0] ) ).whenComplete( (ignored, error) -> {
+            outstanding.release(); // before completing, so the callbacks of the result can make requests
+            if (error != null) {
+                result.completeExceptionally( error );
+                return;
+            }
+            Map<String, Enumeration<Integer>> postings = new LinkedHashMap<>();
+            for (Map.Entry<String, CompletableFuture<int[]>> read : reads.entrySet()) {
+                postings.put( read.getKey(), new ArrayEnumeration( read.getValue().join() ) );
+            }
+            result.complete( postings );
+        } );
+        return result;
+    }
+
+    /**
+     * Returns the review ids IndexReader.getProductReviews returns for a given product identifier
+     */
+    public CompletableFuture<Enumeration<Integer>> getProductReviews(String productId) {
+        return submit( () -> new ArrayEnumeration( reader.decodeProductReviews( productId ) ) );
+    }
+
+    /**
+     * Fills the given arrays as IndexReader.getReviewsMetadata does, and completes once they are filled
+     * The arrays must not be used until then
+     */
+    public CompletableFuture<Void> getReviewsMetadata(int[] reviewIds, int[] scores, int[] numerators,
+                                                      int[] denominators, int[] lengths) {
+        return submit( () -> {
+            reader.getReviewsMetadata( reviewIds, scores, numerators, denominators, lengths );
+            return null;
+        } );
+    }
+
+    /**
+     * Returns the k reviews with the highest BM25 score for a query, as IndexReader.search does
+     */
+    public CompletableFuture<List<SearchResult>> search(String query, int k) {
+        return submit( () -> reader.search( query, k ) );
+    }
+
+    /**
+     * Returns the number of requests that are not complete yet
+     */
+    public int getOutstandingRequests() {
+        return maxOutstanding - outstanding.availablePermits();
+    }
+
+    /**
+     * Returns the largest number of requests that can be incomplete at a time
+     */
+    public int getMaxOutstandingRequests() {
+        return maxOutstanding;
+    }
+
+    /**
+     * Shuts down the executor of the lookups if this reader created it. The requests already made complete.
+     */
+    @Override
+    public void close() {
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Runs a lookup on the executor as one outstanding request
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> lookup) {
+        if (!outstanding.tryAcquire()) {
+            return rejected();
+        }
+        try {
+            return CompletableFuture.supplyAsync( () -> {
+                try {
+                    return lookup.get();
+                } finally {
+                    outstanding.release(); // before completing, so the callbacks of the result can make requests
+                }
+            }, executor );
+        } catch (RuntimeException e) { // the executor rejected the lookup
+            outstanding.release();
+            return CompletableFuture.failedFuture( e );
+        }
+    }
+
+    private <T> CompletableFuture<T> rejected() {
+        return CompletableFuture.failedFuture( new RejectedExecutionException(
+                "There are already " + maxOutstanding + " outstanding requests" ) );
+    }
+}
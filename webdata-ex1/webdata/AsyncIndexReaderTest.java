@@ -0,0 +1,75 @@
+package webdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+
+public class AsyncIndexReaderTest {
+
+    final String DictionaryPath = "D:\\Geffen\\Year_3\\Web_Data\\ex1\\index";
+
+    private List<Integer> toList(Enumeration<Integer> enumeration)
+    {
+        return Collections.list(enumeration);
+    }
+
+    @Test
+    public void AsyncLookupsShouldMatchTheReader() throws Exception
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+        try (AsyncIndexReader async = new AsyncIndexReader(ir, 4, 16)) {
+            assertEquals(toList(ir.getReviewsWithToken("Coffee")), toList(async.getReviewsWithToken("Coffee").get()));
+            assertEquals(toList(ir.getProductReviews("B001E4KFG0")), toList(async.getProductReviews("B001E4KFG0").get()));
+            assertEquals(ir.search("good dog food", 10).toString(), async.search("good dog food", 10).get().toString());
+
+            Map<String, Enumeration<Integer>> postings = async.getReviewsWithTokens(Arrays.asList("the", "tea", "nosuchtoken")).get();
+            assertEquals(Arrays.asList("the", "tea", "nosuchtoken"), new ArrayList<>(postings.keySet()));
+            for (Map.Entry<String, Enumeration<Integer>> entry : postings.entrySet()) {
+                assertEquals(toList(ir.getReviewsWithToken(entry.getKey())), toList(entry.getValue()));
+            }
+
+            int[] ids = {1, 5, 1000, 1001};
+            int[] scores = new int[4], numerators = new int[4], denominators = new int[4], lengths = new int[4];
+            async.getReviewsMetadata(ids, scores, numerators, denominators, lengths).get();
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(ir.getReviewScore(ids[i]), scores[i]);
+                assertEquals(ir.getReviewLength(ids[i]), lengths[i]);
+            }
+            assertEquals(0, async.getOutstandingRequests());
+        }
+    }
+
+    @Test
+    public void RequestsOverTheBoundShouldBeRejected() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+        List<Runnable> queued = new ArrayList<>();
+        AsyncIndexReader async = new AsyncIndexReader(ir, queued::add, 2);
+
+        CompletableFuture<Enumeration<Integer>> first = async.getReviewsWithToken("coffee");
+        CompletableFuture<List<SearchResult>> second = async.search("tea", 5);
+        CompletableFuture<Enumeration<Integer>> third = async.getProductReviews("B001E4KFG0");
+        assertEquals(2, async.getOutstandingRequests());
+        assertTrue(third.isCompletedExceptionally());
+        try {
+            third.join();
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        for (Runnable task : new ArrayList<>(queued)) {
+            task.run();
+        }
+        assertTrue(first.isDone() && second.isDone());
+        assertEquals(0, async.getOutstandingRequests());
+        assertTrue(!async.getProductReviews("B001E4KFG0").isCompletedExceptionally());
+    }
+
+}
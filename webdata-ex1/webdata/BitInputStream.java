@@ -0,0 +1,127 @@
+package webdata;
+
+import java.nio.ByteBuffer;
+
+/***
+ * Reads a stream of bits from a byte buffer, most significant bit first, as written by BitOutputStream.
+ * Each read loads the long word that starts at the current byte, so a whole number is decoded with a
+ * few shifts instead of bit by bit. Reading past the end of the buffer returns zero bits.
+ */
+public class BitInputStream {
+    private final ByteBuffer buffer;
+    private final int limit; // the first byte after the bits that may be read
+    private long position; // the next bit to read, from the beginning of the buffer
+
+    /***
+     * @param buffer - The buffer to read the bits from, with absolute positions
+     * @param start - The byte in the buffer to start reading from
+     * @param end - The byte in the buffer to stop reading at
+     */
+    public BitInputStream(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.limit = end;
+        position = 8L * start;
+    }
+
+    /***
+     * @param bytes - The bytes to read the bits from
+     */
+    public BitInputStream(byte[] bytes) {
+        this( ByteBuffer.wrap( bytes ), 0, bytes.length );
+    }
+
+    /***
+     * @return The 64 bits that start at the current position
+     */
+    private long window() {
+        int index = (int) (position >>> 3);
+        long word;
+        if (index + 8 <= limit) {
+            word = buffer.getLong( index );
+        } else {
+            word = 0;
+            for (int i = 0; i < 8; i++) {
+                word <<= 8;
+                if (index + i < limit) {
+                    word |= buffer.get( index + i ) & 0xFF;
+                }
+            }
+        }
+        int offset = (int) (position & 7);
+        if (offset == 0) {
+            return word;
+        }
+        // the low bits of the word are filled from the next byte
+        int next = index + 8;
+        long nextBits = next < limit ? (buffer.get( next ) & 0xFF) : 0;
+        return (word << offset) | (nextBits >>> (8 - offset));
+    }
+
+    /***
+     * Reads a number written in the given number of bits.
+     * @param count - The number of bits to read, between 0 and 64
+     * @return The number
+     */
+    public long readBits(int count) {
+        if (count == 0) {
+            return 0;
+        }
+        long value = window() >>> (64 - count);
+        position += count;
+        return value;
+    }
+
+    /***
+     * Reads a gamma code, as written by BitOutputStream.writeGamma.
+     * @return The decoded number
+     */
+    public int readGamma() {
+        long window = window();
+        int length = Long.numberOfLeadingZeros( ~window ); // the number of leading ones
+        if (length == 0) {
+            position++;
+            return 1;
+        }
+        if (2 * length + 1 <= 64) {
+            position += 2 * length + 1;
+            return (int) ((1L << length) | ((window << (length + 1)) >>> (64 - length)));
+        }
+        position += length + 1;
+        return (int) ((1L << length) | readBits( length ));
+    }
+
+    /***
+     * Reads 8 bits, straight from the buffer when the stream is at a whole byte.
+     * @return The byte, between 0 and 255
+     */
+    public int readByte() {
+        if ((position & 7) == 0) {
+            int index = (int) (position >>> 3);
+            position += 8;
+            return index < limit ? buffer.get( index ) & 0xFF : 0;
+        }
+        return (int) readBits( 8 );
+    }
+
+    /***
+     * @return The position of the next bit to read, from the beginning of the buffer
+     */
+    public long position() {
+        return position;
+    }
+
+    /***
+     * Moves to the given bit.
+     * @param position - The position of the bit, from the beginning of the buffer
+     */
+    public void seek(long position) {
+        this.position = position;
+    }
+
+    /***
+     * @return Whether there are no more whole bytes to read
+     */
+    public boolean atEnd() {
+        return position >= 8L * limit;
+    }
+}
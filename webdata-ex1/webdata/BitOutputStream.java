@@ -0,0 +1,142 @@
+package webdata;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/***
+ * Writes a stream of bits into an output stream, most significant bit first.
+ * The bits are collected in a long word and written to the output stream a whole byte at a time, so
+ * numbers can be written back to back without padding each of them to whole bytes.
+ */
+public class BitOutputStream {
+    private final OutputStream out;
+    private final byte[] bytes; // bytes waiting to be written to the output stream
+    private int bytesCount;
+    private long bits; // bits waiting to be written, right aligned
+    private int bitsCount; // the number of bits waiting in bits, less than 8 between calls
+    private long position; // the number of bits written so far
+
+    /***
+     * @param out - The output stream to write the bits into
+     */
+    public BitOutputStream(OutputStream out) {
+        this.out = out;
+        bytes = new byte[8192];
+    }
+
+    /***
+     * Writes the lowest bits of a number.
+     * @param value - The number to write
+     * @param count - The number of bits to write, between 0 and 64
+     */
+    public void writeBits(long value, int count) throws IOException {
+        if (count > 56) {
+            writeBits( value >>> 32, count - 32 );
+            writeBits( value, 32 );
+            return;
+        }
+        if (count == 0) {
+            return;
+        }
+        bits = (bits << count) | (value & (-1L >>> (64 - count)));
+        bitsCount += count;
+        position += count;
+        while (bitsCount >= 8) {
+            bitsCount -= 8;
+            if (bytesCount == bytes.length) {
+                out.write( bytes, 0, bytesCount );
+                bytesCount = 0;
+            }
+            bytes[bytesCount++] = (byte) (bits >>> bitsCount);
+        }
+    }
+
+    /***
+     * Writes whole bytes.
+     * @param data - The bytes to write
+     */
+    public void write(byte[] data) throws IOException {
+        for (byte b : data) {
+            writeBits( b, 8 );
+        }
+    }
+
+    /***
+     * Writes bits read from an input stream, most significant bit first, as they were written by a
+     * BitOutputStream.
+     * @param in - The stream to read the bits from
+     * @param count - The number of bits to write
+     */
+    public void write(InputStream in, long count) throws IOException {
+        for (long left = count; left > 0; ) {
+            int bytesCount = (int) Math.min( 7, (left + 7) / 8 );
+            long word = 0;
+            for (int i = 0; i < bytesCount; i++) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException( "Expected " + left + " more bits" );
+                }
+                word = (word << 8) | b;
+            }
+            int wordBits = (int) Math.min( 8L * bytesCount, left );
+            writeBits( word >>> (8 * bytesCount - wordBits), wordBits );
+            left -= wordBits;
+        }
+    }
+
+    /***
+     * Writes the gamma code of a number: the length of its binary representation (without the leading 1)
+     * in unary as ones ending with a zero, followed by the binary representation without the leading 1.
+     * @param number - The number to write, a positive number
+     */
+    public void writeGamma(int number) throws IOException {
+        int length = 31 - Integer.numberOfLeadingZeros( number );
+        long unary = ((1L << length) - 1) << 1;
+        writeBits( (unary << length) | (number ^ (1 << length)), 2 * length + 1 );
+    }
+
+    /***
+     * @param number - A positive number
+     * @return The number of bits in the gamma code of the number
+     */
+    public static int gammaLength(int number) {
+        return 2 * (31 - Integer.numberOfLeadingZeros( number )) + 1;
+    }
+
+    /***
+     * Pads the stream with zero bits up to the next whole byte.
+     */
+    public void align() throws IOException {
+        if (bitsCount > 0) {
+            writeBits( 0, 8 - bitsCount );
+        }
+    }
+
+    /***
+     * @return The number of bits written so far
+     */
+    public long position() {
+        return position;
+    }
+
+    /***
+     * Writes all the whole bytes to the output stream and flushes it. Bits that do not fill a byte are
+     * kept until the stream is aligned.
+     */
+    public void flush() throws IOException {
+        out.write( bytes, 0, bytesCount );
+        bytesCount = 0;
+        out.flush();
+    }
+
+    /***
+     * Aligns the stream, writes all the bytes and closes the output stream.
+     */
+    public void close() throws IOException {
+        align();
+        flush();
+        out.close();
+    }
+}
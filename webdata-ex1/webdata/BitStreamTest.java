@@ -0,0 +1,178 @@
+package webdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class BitStreamTest {
+
+    private byte[] writeGammas(int[] numbers) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BitOutputStream bits = new BitOutputStream(bytes);
+        for (int number : numbers) {
+            bits.writeGamma(number);
+        }
+        bits.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void GammaShouldRoundTrip() throws IOException
+    {
+        Random random = new Random(42);
+        int[] numbers = new int[100000];
+        for (int i = 0; i < numbers.length; i++) {
+            // mostly small gaps, some of every length up to Integer.MAX_VALUE
+            numbers[i] = 1 + (random.nextInt(4) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(100));
+        }
+        numbers[0] = 1;
+        numbers[1] = Integer.MAX_VALUE;
+
+        BitInputStream bits = new BitInputStream(writeGammas(numbers));
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals("number " + i, numbers[i], bits.readGamma());
+        }
+    }
+
+    @Test
+    public void GammaCodesShouldNotBePadded() throws IOException
+    {
+        // 1 -> 0, 2 -> 100, 3 -> 101, 4 -> 11000
+        byte[] bytes = writeGammas(new int[]{1, 2, 3, 4});
+        assertEquals(2, bytes.length);
+        assertEquals((byte) 0b01001011, bytes[0]);
+        assertEquals((byte) 0b10000000, bytes[1]);
+    }
+
+    @Test
+    public void BitsShouldRoundTrip() throws IOException
+    {
+        Random random = new Random(7);
+        long[] values = new long[10000];
+        int[] counts = new int[values.length];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BitOutputStream out = new BitOutputStream(bytes);
+        for (int i = 0; i < values.length; i++) {
+            counts[i] = random.nextInt(65);
+            values[i] = counts[i] == 0 ? 0 : random.nextLong() >>> (64 - counts[i]);
+            out.writeBits(values[i], counts[i]);
+        }
+        long written = out.position();
+        out.close();
+
+        BitInputStream in = new BitInputStream(bytes.toByteArray());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals("value " + i, values[i], in.readBits(counts[i]));
+        }
+        assertEquals(written, in.position());
+    }
+
+    @Test
+    public void AlignShouldStartNextByte() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BitOutputStream out = new BitOutputStream(bytes);
+        out.writeGamma(5);
+        out.align();
+        assertEquals(8, out.position());
+        out.writeGamma(9);
+        out.close();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        BitInputStream in = new BitInputStream(buffer, 1, buffer.limit());
+        assertEquals(9, in.readGamma());
+        assertTrue(in.position() <= 8L * buffer.limit());
+    }
+
+    @Test
+    public void PackedIntsShouldReadAnyIndex() throws IOException
+    {
+        Random random = new Random(3);
+        for (int bits = 0; bits <= 32; bits++) {
+            int[] values = new int[1000];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = bits == 0 ? 0 : (int) (random.nextLong() >>> (64 - bits));
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            BitOutputStream out = new BitOutputStream(bytes);
+            out.writeBits(1, 3); // the packed numbers do not have to start at a whole byte
+            PackedInts.write(out, values, 0, values.length, bits);
+            out.close();
+
+            PackedInts packed = new PackedInts(ByteBuffer.wrap(bytes.toByteArray()), 3, bits);
+            for (int i = values.length - 1; i >= 0; i--) {
+                assertEquals("bits " + bits + " value " + i, values[i], packed.get(i));
+            }
+        }
+        assertEquals(0, PackedInts.bitsRequired(0));
+        assertEquals(3, PackedInts.bitsRequired(7));
+        assertEquals(4, PackedInts.bitsRequired(8));
+    }
+
+    @Test
+    public void MonotonicIntsShouldReadAnyIndex() throws IOException
+    {
+        Random random = new Random(9);
+        int[] values = new int[1000];
+        for (int i = 1; i < values.length; i++) {
+            // mostly small steps, some huge ones, and a few that go back
+            int step = random.nextInt(20) == 0 ? random.nextInt(1 << 30) : random.nextInt(100);
+            values[i] = random.nextInt(50) == 0 ? values[i - 1] - step : values[i - 1] + step;
+        }
+        MonotonicInts packed = new MonotonicInts(values, values.length);
+        for (int i = values.length - 1; i >= 0; i--) {
+            assertEquals("value " + i, values[i], packed.get(i));
+        }
+        assertEquals(values.length, packed.size());
+    }
+
+    @Test
+    public void PostingCodecsShouldRoundTrip() throws IOException
+    {
+        Random random = new Random(13);
+        int[] gaps = new int[IndexHeader.SKIP_INTERVAL];
+        int[] freqs = new int[IndexHeader.SKIP_INTERVAL];
+        for (int i = 0; i < gaps.length; i++) {
+            // mostly small gaps and frequencies, with a few exceptions for the frame of reference codecs
+            gaps[i] = 1 + (random.nextInt(10) == 0 ? random.nextInt(Integer.MAX_VALUE - 1) : random.nextInt(30));
+            freqs[i] = 1 + (random.nextInt(10) == 0 ? random.nextInt(100000) : random.nextInt(3));
+        }
+        for (int id = PostingCodec.GAMMA; id <= PostingCodec.PFOR_DELTA; id++) {
+            PostingCodec codec = PostingCodec.forId(id);
+            assertEquals(id, PostingCodec.forName(codec.name()).id());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            BitOutputStream out = new BitOutputStream(bytes);
+            out.writeBits(5, 3);
+            if (codec.isByteAligned()) {
+                out.align();
+            }
+            codec.writeBlock(out, gaps, freqs, gaps.length);
+            codec.writeBlock(out, gaps, freqs, 7); // a last block which is not full
+            out.close();
+
+            BitInputStream in = new BitInputStream(bytes.toByteArray());
+            assertEquals(5, in.readBits(3));
+            if (codec.isByteAligned()) {
+                in.seek(8);
+            }
+            int[] readGaps = new int[gaps.length];
+            int[] readFreqs = new int[freqs.length];
+            for (int count : new int[]{gaps.length, 7}) {
+                codec.readBlock(in, readGaps, readFreqs, count);
+                for (int i = 0; i < count; i++) {
+                    assertEquals(codec.name() + " gap " + i, gaps[i], readGaps[i]);
+                    assertEquals(codec.name() + " freq " + i, freqs[i], readFreqs[i]);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package webdata;
+
+/***
+ * The BM25 ranking function. The writer and the reader of the index both score with these functions, so
+ * the upper bounds the writer stores for each token are exact for the scores the reader computes.
+ */
+public class Bm25 {
+    public static final float K1 = 1.2f;
+    public static final float B = 0.75f;
+    public static final float MAX_TF_PART = K1 + 1; // the limit of tfPart, an upper bound for any token
+
+    private Bm25() {
+    }
+
+    /***
+     * @param reviews - The number of reviews in the index
+     * @param documentFrequency - The number of reviews containing the token
+     * @return The inverse document frequency of the token, never negative
+     */
+    public static double idf(int reviews, int documentFrequency) {
+        return Math.log( 1 + (reviews - documentFrequency + 0.5) / (documentFrequency + 0.5) );
+    }
+
+    /***
+     * @param length - The number of tokens in a review
+     * @param averageLength - The average number of tokens in a review
+     * @return The length normalization of the review, which only depends on the review and can be cached
+     */
+    public static float norm(int length, float averageLength) {
+        return K1 * (1 - B + B * length / averageLength);
+    }
+
+    /***
+     * @param frequency - The frequency of a token in a review
+     * @param norm - The length normalization of the review
+     * @return The saturated term frequency part of the score, below MAX_TF_PART
+     */
+    public static float tfPart(int frequency, float norm) {
+        return frequency * MAX_TF_PART / (frequency + norm);
+    }
+}
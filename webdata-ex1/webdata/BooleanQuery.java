@@ -0,0 +1,202 @@
+package webdata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Evaluates boolean queries over the tokens and the product ids of the index, directly on their posting lists.
+ * A query is made of words, product ids written as "product:B001E4KFG0", the operators AND, OR and NOT
+ * (in upper case, as the indexed tokens are lower case) and parentheses. Adjacent terms are joined by AND,
+ * NOT binds tighter than AND, which binds tighter than OR, so "a b OR NOT c" is "(a AND b) OR (NOT c)".
+ * Words are split into tokens the way review texts are, and a word of several tokens must match all of them.
+ * In an index with positions, a quoted text such as "dog food" matches the phrase, and "dog food"~3 matches
+ * the tokens within a distance of 3 of each other. In an index with a trie of the tokens, a word with '*' or
+ * '?' such as "dog*" matches any of the tokens it expands to (see IndexReader.getTokensMatching).
+ * <p>
+ * The query is evaluated lazily as the returned iterator is advanced: an AND is led by its rarest term and the
+ * other terms skip to its reviews, an OR merges its terms, and NOT terms are skipped over the remaining reviews.
+ */
+public class BooleanQuery {
+    public static final String PRODUCT_PREFIX = "product:";
+
+    private final IndexReader reader;
+    private final List<String> parts;
+    private final Tokenizer tokenizer;
+    private int position; // the next part to parse
+
+    private BooleanQuery(IndexReader reader, String query) {
+        this.reader = reader;
+        parts = split( query );
+        tokenizer = new Tokenizer();
+        position = 0;
+    }
+
+    /***
+     * Parses a query and returns the iterator that evaluates it.
+     * @param reader - The reader of the index to query
+     * @param query - The query
+     * @return An iterator over the ids of the matching reviews, in increasing order
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public static DocIterator parse(IndexReader reader, String query) {
+        BooleanQuery parser = new BooleanQuery( reader, query );
+        if (parser.parts.isEmpty()) {
+            throw new IllegalArgumentException( "Empty query" );
+        }
+        DocIterator iterator = parser.parseOr();
+        if (parser.position < parser.parts.size()) {
+            throw new IllegalArgumentException( "Unexpected '" + parser.parts.get( parser.position ) + "' in query" );
+        }
+        return iterator;
+    }
+
+    /***
+     * Splits a query into parentheses, quoted texts (with their distance) and the white space separated parts
+     * between them.
+     */
+    private static List<String> split(String query) {
+        List<String> parts = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt( i ) : ' ';
+            if (c == '"' && start == -1) {
+                int end = query.indexOf( '"', i + 1 );
+                if (end == -1) {
+                    throw new IllegalArgumentException( "Missing '\"' in query" );
+                }
+                end++;
+                if (end < query.length() && query.charAt( end ) == '~') {
+                    end++;
+                    while (end < query.length() && Character.isDigit( query.charAt( end ) )) {
+                        end++;
+                    }
+                }
+                parts.add( query.substring( i, end ) );
+                i = end - 1;
+                continue;
+            }
+            boolean separator = Character.isWhitespace( c ) || c == '(' || c == ')';
+            if (separator && start != -1) {
+                parts.add( query.substring( start, i ) );
+                start = -1;
+            } else if (!separator && start == -1) {
+                start = i;
+            }
+            if (c == '(' || c == ')') {
+                parts.add( String.valueOf( c ) );
+            }
+        }
+        return parts;
+    }
+
+    /***
+     * @return The next part of the query, or null at the end of the query
+     */
+    private String peek() {
+        return position < parts.size() ? parts.get( position ) : null;
+    }
+
+    /***
+     * or := and ("OR" and)*
+     */
+    private DocIterator parseOr() {
+        List<DocIterator> clauses = new ArrayList<>();
+        clauses.add( parseAnd() );
+        while ("OR".equals( peek() )) {
+            position++;
+            clauses.add( parseAnd() );
+        }
+        if (clauses.size() == 1) {
+            return clauses.get( 0 );
+        }
+        return new DisjunctionIterator( clauses.toArray( new DocIterator[0] ) );
+    }
+
+    /***
+     * and := unary (["AND"] unary)*
+     */
+    private DocIterator parseAnd() {
+        List<DocIterator> include = new ArrayList<>();
+        List<DocIterator> exclude = new ArrayList<>();
+        while (true) {
+            boolean negated = false;
+            while ("NOT".equals( peek() )) {
+                position++;
+                negated = !negated;
+            }
+            (negated ? exclude : include).add( parseUnary() );
+            String next = peek();
+            if ("AND".equals( next )) {
+                position++;
+            } else if (next == null || next.equals( "OR" ) || next.equals( ")" )) {
+                break;
+            }
+        }
+        DocIterator included;
+        if (include.isEmpty()) {
+            included = new AllDocsIterator( reader.getNumberOfReviews() );
+        } else if (include.size() == 1) {
+            included = include.get( 0 );
+        } else {
+            included = new ConjunctionIterator( include.toArray( new DocIterator[0] ) );
+        }
+        if (exclude.isEmpty()) {
+            return included;
+        }
+        DocIterator excluded = exclude.size() == 1 ? exclude.get( 0 )
+                : new DisjunctionIterator( exclude.toArray( new DocIterator[0] ) );
+        return new ExclusionIterator( included, excluded );
+    }
+
+    /***
+     * unary := "(" or ")" | term
+     */
+    private DocIterator parseUnary() {
+        String part = peek();
+        if (part == null || part.equals( ")" ) || part.equals( "AND" ) || part.equals( "OR" )) {
+            throw new IllegalArgumentException( part == null ? "Unexpected end of query" : "Unexpected '" + part + "' in query" );
+        }
+        position++;
+        if (part.equals( "(" )) {
+            DocIterator iterator = parseOr();
+            if (!")".equals( peek() )) {
+                throw new IllegalArgumentException( "Missing ')' in query" );
+            }
+            position++;
+            return iterator;
+        }
+        if (part.startsWith( "\"" )) {
+            int end = part.lastIndexOf( '"' );
+            String text = part.substring( 1, end );
+            if (end == part.length() - 1) {
+                return reader.getReviewsWithPhrase( text );
+            }
+            if (end == part.length() - 2) {
+                throw new IllegalArgumentException( "Missing distance in '" + part + "'" );
+            }
+            return reader.getReviewsWithinDistance( text, Integer.parseInt( part.substring( end + 2 ) ) );
+        }
+        if (part.startsWith( PRODUCT_PREFIX )) {
+            return reader.getProductPostings( part.substring( PRODUCT_PREFIX.length() ) );
+        }
+        if (part.indexOf( '*' ) != -1 || part.indexOf( '?' ) != -1) {
+            DocIterator[] expansions = reader.getTokensMatching( part ).values().toArray( new DocIterator[0] );
+            if (expansions.length == 0) {
+                return PostingIterator.empty();
+            }
+            return expansions.length == 1 ? expansions[0] : new DisjunctionIterator( expansions );
+        }
+        List<DocIterator> tokens = new ArrayList<>();
+        tokenizer.reset( part );
+        while (tokenizer.next()) {
+            tokens.add( reader.getTokenPostings( tokenizer.token() ) );
+        }
+        if (tokens.isEmpty()) {
+            return PostingIterator.empty(); // the word has no indexed characters, so no review contains it
+        }
+        if (tokens.size() == 1) {
+            return tokens.get( 0 );
+        }
+        return new ConjunctionIterator( tokens.toArray( new DocIterator[0] ) );
+    }
+}
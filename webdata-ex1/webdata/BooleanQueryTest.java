@@ -0,0 +1,85 @@
+package webdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.*;
+
+import org.junit.Test;
+
+
+public class BooleanQueryTest {
+
+    final String DictionaryPath = "D:\\Geffen\\Year_3\\Web_Data\\ex1\\index";
+
+    private List<Integer> collect(DocIterator iterator)
+    {
+        List<Integer> ids = new ArrayList<>();
+        for (int doc = iterator.nextDoc(); doc != DocIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+            ids.add(doc);
+        }
+        return ids;
+    }
+
+    private List<Integer> collect(Enumeration<Integer> postings, boolean withFrequencies)
+    {
+        List<Integer> ids = new ArrayList<>();
+        while (postings.hasMoreElements()) {
+            ids.add(postings.nextElement());
+            if (withFrequencies) {
+                postings.nextElement();
+            }
+        }
+        return ids;
+    }
+
+    @Test
+    public void AndShouldIntersect() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+
+        List<Integer> expected = collect(ir.getReviewsWithToken("coffee"), true);
+        expected.retainAll(collect(ir.getReviewsWithToken("taste"), true));
+
+        assertEquals(expected, collect(ir.getReviewsMatching("coffee AND taste")));
+        assertEquals(expected, collect(ir.getReviewsMatching("taste coffee")));
+    }
+
+    @Test
+    public void OrAndNotShouldCombine() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+
+        Set<Integer> expected = new TreeSet<>(collect(ir.getProductReviews("B0009XLVG0"), false));
+        expected.addAll(collect(ir.getReviewsWithToken("dog"), true));
+        expected.removeAll(collect(ir.getReviewsWithToken("the"), true));
+
+        assertEquals(new ArrayList<>(expected),
+                collect(ir.getReviewsMatching("(product:B0009XLVG0 OR dog) AND NOT the")));
+    }
+
+    @Test
+    public void NotShouldReturnTheOtherReviews() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+
+        int with = collect(ir.getReviewsWithToken("the"), true).size();
+        assertEquals(ir.getNumberOfReviews() - with, collect(ir.getReviewsMatching("NOT the")).size());
+    }
+
+    @Test
+    public void MalformedQueryShouldThrow() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+
+        for (String query : Arrays.asList("", "(coffee", "coffee OR", "AND coffee", "coffee )")) {
+            try {
+                ir.getReviewsMatching(query);
+                assertTrue(query + " should be rejected", false);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
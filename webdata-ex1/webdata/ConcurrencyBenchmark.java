@@ -0,0 +1,147 @@
+package webdata;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+/***
+ * Measures the throughput and the latency of one IndexReader shared by several threads, which run a mix of
+ * ranked searches, posting list reads, product reviews and review metadata lookups, at 1 to 64 platform
+ * threads and, if the JVM has them, as many virtual threads.
+ * The result of every query is checked against the result of running it alone, so the benchmark also fails
+ * if the reader gives a wrong answer under concurrent use.
+ * Usage: ConcurrencyBenchmark dir [queries] [maxThreads]
+ */
+public class ConcurrencyBenchmark {
+    private static final String[] WORDS = {"the", "coffee", "good", "dog", "food", "tea", "best", "habanero",
+            "sauce", "love", "taste", "product", "great", "price", "bag", "flavor"};
+
+    public static void main(String[] args) throws Exception {
+        IndexReader reader = new IndexReader( args[0] );
+        int count = args.length > 1 ? Integer.parseInt( args[1] ) : 20000;
+        int maxThreads = args.length > 2 ? Integer.parseInt( args[2] ) : 64;
+        List<ToLongFunction<IndexReader>> queries = queries( reader, count );
+        long[] expected = new long[count];
+        for (int i = 0; i < count; i++) {
+            expected[i] = queries.get( i ).applyAsLong( reader );
+        }
+        ExecutorService warmUp = Executors.newFixedThreadPool( maxThreads );
+        run( "warm up", warmUp, maxThreads, reader, queries, expected, false );
+        warmUp.shutdown();
+
+        Method virtualThreads = virtualThreadsFactory();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ExecutorService platform = Executors.newFixedThreadPool( threads );
+            run( "platform", platform, threads, reader, queries, expected, true );
+            platform.shutdown();
+            if (virtualThreads != null) {
+                ExecutorService virtual = (ExecutorService) virtualThreads.invoke( null );
+                run( "virtual", virtual, threads, reader, queries, expected, true );
+                virtual.shutdown();
+            }
+        }
+        if (virtualThreads == null) {
+            System.out.println( "Virtual threads are not available in this JVM, their runs are skipped" );
+        }
+    }
+
+    /***
+     * @return Executors.newVirtualThreadPerTaskExecutor, or null if the JVM has no virtual threads
+     */
+    private static Method virtualThreadsFactory() {
+        try {
+            return Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /***
+     * Runs all the queries by the given number of tasks of an executor, which take the next query until there
+     * are none left, and prints the queries per second and the median and 99th percentile latency.
+     */
+    private static void run(String name, ExecutorService executor, int threads, IndexReader reader,
+                            List<ToLongFunction<IndexReader>> queries, long[] expected, boolean print)
+            throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger wrong = new AtomicInteger();
+        long[] latencies = new long[queries.size()];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add( () -> {
+                for (int i = next.getAndIncrement(); i < latencies.length; i = next.getAndIncrement()) {
+                    long start = System.nanoTime();
+                    long result = queries.get( i ).applyAsLong( reader );
+                    latencies[i] = System.nanoTime() - start;
+                    if (result != expected[i]) {
+                        wrong.incrementAndGet();
+                    }
+                }
+                return null;
+            } );
+        }
+        long start = System.nanoTime();
+        executor.invokeAll( tasks );
+        long elapsed = System.nanoTime() - start;
+        if (wrong.get() > 0) {
+            throw new IllegalStateException( wrong.get() + " queries gave a wrong result with " + threads + " " +
+                    name + " threads" );
+        }
+        if (print) {
+            Arrays.sort( latencies );
+            System.out.printf( "%-8s %3d threads %10.0f queries/s  p50 %8.1f us  p99 %8.1f us%n", name, threads,
+                    latencies.length / (elapsed / 1e9), latencies[latencies.length / 2] / 1e3,
+                    latencies[(int) (latencies.length * 0.99)] / 1e3 );
+        }
+    }
+
+    /***
+     * @return A fixed mix of queries, each giving a checksum of its result
+     */
+    private static List<ToLongFunction<IndexReader>> queries(IndexReader reader, int count) {
+        Random random = new Random( 7 );
+        List<ToLongFunction<IndexReader>> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String word = WORDS[random.nextInt( WORDS.length )];
+            String other = WORDS[random.nextInt( WORDS.length )];
+            int reviewId = 1 + random.nextInt( Math.max( 1, reader.getNumberOfReviews() ) );
+            switch (i % 4) {
+                case 0:
+                    queries.add( r -> {
+                        long sum = 0;
+                        for (SearchResult result : r.search( word + " " + other, 10 )) {
+                            sum = 31 * sum + result.getReviewId();
+                        }
+                        return sum;
+                    } );
+                    break;
+                case 1:
+                    queries.add( r -> sum( r.getReviewsWithToken( word ) ) );
+                    break;
+                case 2:
+                    queries.add( r -> sum( r.getProductReviews( r.getProductId( reviewId ) ) ) );
+                    break;
+                default:
+                    queries.add( r -> r.getReviewScore( reviewId ) + 31L * r.getReviewHelpfulnessNumerator( reviewId ) +
+                            961L * r.getReviewHelpfulnessDenominator( reviewId ) + 29791L * r.getReviewLength( reviewId ) );
+            }
+        }
+        return queries;
+    }
+
+    private static long sum(Enumeration<Integer> numbers) {
+        long sum = 0;
+        while (numbers.hasMoreElements()) {
+            sum = 31 * sum + numbers.nextElement();
+        }
+        return sum;
+    }
+}
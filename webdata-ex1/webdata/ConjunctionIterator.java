@@ -0,0 +1,67 @@
+package webdata;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/***
+ * Iterates over the reviews that all the given iterators return. The iterators are ordered by their cost,
+ * so the rarest one leads and the others are only advanced to its reviews, which lets them skip over
+ * everything in between.
+ */
+public class ConjunctionIterator implements DocIterator {
+    private final DocIterator[] iterators; // sorted by cost, the first one leads
+    private int doc;
+
+    /***
+     * @param iterators - The iterators to intersect, at least one
+     */
+    public ConjunctionIterator(DocIterator... iterators) {
+        this.iterators = iterators.clone();
+        Arrays.sort( this.iterators, Comparator.comparingInt( DocIterator::cost ) );
+        doc = -1;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doNext( iterators[0].nextDoc() );
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        return doNext( iterators[0].advance( target ) );
+    }
+
+    /***
+     * Moves all the iterators to the first common review starting at the given review of the leading iterator.
+     * @param target - The current review of the leading iterator
+     * @return The common review, or NO_MORE_DOCS if there is none
+     */
+    private int doNext(int target) {
+        int i = 1;
+        while (target != NO_MORE_DOCS && i < iterators.length) {
+            int other = iterators[i].advance( target );
+            if (other == target) {
+                i++;
+            } else {
+                // the other iterator has no such review, so the leading one can jump to where it stopped
+                target = iterators[0].advance( other );
+                i = 1;
+            }
+        }
+        doc = target;
+        return doc;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int cost() {
+        return iterators[0].cost();
+    }
+}
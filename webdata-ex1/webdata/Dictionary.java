@@ -1,22 +1,36 @@
 package webdata;
 
 import java.io.BufferedReader;
-import java.io.DataInputStream;
-import java.io.EOFException;
-import java.io.RandomAccessFile;
-import java.math.BigInteger;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/***
+ * A front coded dictionary of terms, each with its posting list in a mapped file.
+ * The fields are only set while the dictionary is read, and the searches copy the term into a scratch
+ * buffer of the thread, so a dictionary can be searched by several threads at once without locks.
+ */
 public abstract class Dictionary {
     protected int K;
-    protected int[] sizeToken; // sizes for each token
-    protected int[] prefixSize; // mutual prefix size of token and prev token
-    protected int[] postingLists; // positions to postingLists
-    protected int[] tokenPointer; // pointer to the beginning of each block
+    protected byte[] sizeToken; // sizes for each token
+    protected byte[] prefixSize; // mutual prefix size of token and prev token
+    protected MonotonicInts postingLists; // positions to postingLists
+    protected MonotonicInts tokenPointer; // pointer to the beginning of each block
     protected int tokensSize;
     protected int blocks;
     protected String concatenation;
-    protected Gamma gamma; // an encoder object
+    protected int version; // the on disk format of the index
+    protected PostingCodec codec; // the codec of the posting lists
+    protected int numbersPerPosting; // 2 for review id and frequency, 1 for only a review id
+    protected ByteBuffer postings; // the mapped posting lists file
+    protected MinimalPerfectHash hash; // maps a term to its index, null if the index has no hash
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial( () -> new char[64] );
 
 
     /***
@@ -33,15 +47,11 @@ public abstract class Dictionary {
 
     /***
      * Reads the positions of the posting lists of each token into an array field.
-     * @param positionsFile - The file in which the positions are written.
+     * @param positionsFile - The mapped file in which the positions are written.
      */
-    protected void readPositionsFile(DataInputStream positionsFile) {
+    protected void readPositionsFile(IntBuffer positionsFile) {
         try {
-            int i = 0;
-            while (i < tokensSize) {
-                postingLists[i] = positionsFile.readInt();
-                i++;
-            }
+            postingLists = MonotonicInts.read( positionsFile, tokensSize );
         } catch (Exception e) {
             System.out.println( "Error positions!!" );
         }
@@ -49,31 +59,28 @@ public abstract class Dictionary {
 
     /***
      * Reads the pointers in block of each token into an array field.
-     * @param infoBlocksFile - The file in which the pointers are written.
+     * @param infoBlocksFile - The mapped file in which the pointers are written, at the pointers.
      */
-    protected void readInfoBlockFile(DataInputStream infoBlocksFile) {
+    protected void readInfoBlockFile(IntBuffer infoBlocksFile) {
         try {
-            int i = 0;
-            while (i < blocks) {
-                tokenPointer[i] = infoBlocksFile.readInt();
-                i++;
-            }
+            tokenPointer = MonotonicInts.read( infoBlocksFile, blocks );
         } catch (Exception e) {
             System.out.println( "Error - info" );
         }
     }
 
     /***
-     * Reads the sizes of each token and each token's prefix into an array field.
-     * @param sizeFile - The file in which the sizes are written.
+     * Reads the sizes of each token and each token's prefix into an array field. The sizes are kept in
+     * bytes, as they are used.
+     * @param sizeFile - The mapped file in which the sizes are written.
      */
-    protected void readSizesFile(DataInputStream sizeFile) {
+    protected void readSizesFile(IntBuffer sizeFile) {
         try {
-            int i = 0;
-            while (i < tokensSize) {
-                sizeToken[i] = sizeFile.readInt();
-                prefixSize[i] = sizeFile.readInt();
-                i++;
+            int[] sizes = new int[2 * tokensSize];
+            sizeFile.get( sizes );
+            for (int i = 0; i < tokensSize; i++) {
+                sizeToken[i] = (byte) sizes[2 * i];
+                prefixSize[i] = (byte) sizes[2 * i + 1];
             }
         } catch (Exception e) {
             System.out.println( "Error - sizes" );
@@ -110,19 +117,6 @@ public abstract class Dictionary {
         return finalNumbers;
     }
 
-    /***
-     * This function get a series of gamma codes and decodes them into their real numbers
-     * @param codes - codes to decode
-     * @return - An int array contains all numbers decoded from the given gamma codes
-     */
-    private int[] decodeGammaCodes(String[] codes) {
-        int[] numbers = new int[codes.length];
-        for (int i = 0; i < codes.length; i++) {
-            numbers[i] = gamma.decode( codes[i] );
-        }
-        return numbers;
-    }
-
     /***
      * Finds the overhead of a given gamma code
      * @param substring - The gamma code to calculate it's overhead
@@ -145,26 +139,75 @@ public abstract class Dictionary {
      */
     public abstract int searchToken(String token);
 
+    /***
+     * Finds the index of the term in the dictionary, by the perfect hash of the dictionary if the index has
+     * one, or by a binary search on the blocks otherwise. The term is copied into a scratch buffer of the
+     * thread, lower cased if asked, so the search does not allocate.
+     * @param token - The term to search for
+     * @param lowerCase - Whether to lower case the term first
+     * @return The index of the given term in the dictionary, or -1 if it is not in the dictionary
+     */
+    protected int searchTerm(String token, boolean lowerCase) {
+        int length = token.length();
+        char[] term = scratch( length );
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt( i );
+            if (lowerCase && c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            } else if (lowerCase && c >= 0x80) { // lower casing may change the length, as String does it
+                return searchTerm( token.toLowerCase(), false );
+            }
+            term[i] = c;
+        }
+        return searchTerm( term, length );
+    }
+
+    /***
+     * Finds the index of the term in the dictionary, comparing it in place with the concatenation
+     * @param term - The characters of the term to search for
+     * @param length - The length of the term
+     * @return The index of the given term in the dictionary, or -1 if it is not in the dictionary
+     */
+    public int searchTerm(char[] term, int length) {
+        if (hash != null) {
+            int index = hash.lookup( term, length );
+            return index >= 0 && termEquals( index, term, length ) ? index : -1;
+        }
+        return searchTokenRecursive( 0, blocks - 1, term, length );
+    }
+
+    /***
+     * @param length - The number of characters needed
+     * @return The scratch buffer of the current thread, with room for length characters
+     */
+    private static char[] scratch(int length) {
+        char[] buffer = SCRATCH.get();
+        if (buffer.length < length) {
+            buffer = new char[Math.max( length, 2 * buffer.length )];
+            SCRATCH.set( buffer );
+        }
+        return buffer;
+    }
+
     /***
      * A recursive function that performs a binary search to find in which block the token is
      * @param left - Left boundary to search from
      * @param right - Right boundary to search from
-     * @param token - The token to search for
+     * @param term - The token to search for
+     * @param length - The length of the token
      * @return The index of the given token in the dictionary
      */
-    protected int searchTokenRecursive(int left, int right, String token) {
+    protected int searchTokenRecursive(int left, int right, char[] term, int length) {
         if (left < right) {
             int middle = left + (right - left) / 2;
-            if (token.equals( concatenation.substring( tokenPointer[middle], tokenPointer[middle] +
-                    (byte) sizeToken[middle * K] ) )) {
+            if (compareWithBlock( middle, term, length ) == 0) {
                 return middle * K;
             }
-            return checkWhichBlock( left, right, token, middle );
+            return checkWhichBlock( left, right, term, length, middle );
         }
         if (right == left) {
-            if (!(token.equals( concatenation.substring( tokenPointer[left],
-                    tokenPointer[left] + (byte) sizeToken[left * K] ) ))) {
-                return searchInBlock( left, token );
+            if (compareWithBlock( left, term, length ) != 0) {
+                return searchInBlock( left, left * K + K - 1, term, length );
             }
             return left * K;
         }
@@ -175,110 +218,186 @@ public abstract class Dictionary {
      * A recursive function that performs a binary search to find in which block the token is
      * @param left - Left boundary to search from
      * @param right - Right boundary to search from
-     * @param token - The token to search for
+     * @param term - The token to search for
+     * @param length - The length of the token
      * @return The index of the given token in the dictionary
      */
-    private int checkWhichBlock(int left, int right, String token, int middle) {
-        if (token.compareTo( concatenation.substring( tokenPointer[middle], tokenPointer[middle] +
-                (byte) sizeToken[middle * K] ) ) < 0) {
-            return searchTokenRecursive( left, middle - 1, token );
+    private int checkWhichBlock(int left, int right, char[] term, int length, int middle) {
+        if (compareWithBlock( middle, term, length ) < 0) {
+            return searchTokenRecursive( left, middle - 1, term, length );
         }
-        if (token.compareTo( concatenation.substring( tokenPointer[middle + 1],
-                tokenPointer[middle + 1] + (byte) sizeToken[(middle + 1) * K] ) ) < 0) {
-            return searchTokenRecursive( middle, middle, token );
+        if (compareWithBlock( middle + 1, term, length ) < 0) {
+            return searchTokenRecursive( middle, middle, term, length );
         }
-        return searchTokenRecursive( middle + 1, right, token );
+        return searchTokenRecursive( middle + 1, right, term, length );
     }
 
     /***
-     * Search for the token in a given block (linear search)
-     * @param left - Left boundary to search from
-     * @param token - The token to search for
-     * @return The index of the given token in the dictionary
+     * Compares a term with the first term of a block, which is written whole in the concatenation, in place
+     * @param block - The block
+     * @param term - The term to compare
+     * @param length - The length of the term
+     * @return A negative number, zero or a positive number as the term is less than, equal to or greater than
+     * the first term of the block, as String.compareTo
      */
-    private int searchInBlock(int left, String token) {
-        int startBlock = tokenPointer[left];
-        int posAccordingToBlocks = left * K; // index to token number
-        String prevToken = concatenation.substring( startBlock, startBlock +
-                (byte) sizeToken[posAccordingToBlocks] );
-        startBlock += (byte) sizeToken[posAccordingToBlocks];
-
-        int endBlock = tokensSize;
-        if ((tokensSize - posAccordingToBlocks >= K) || (left != (blocks - 1))) {
-            endBlock = posAccordingToBlocks + K;
+    private int compareWithBlock(int block, char[] term, int length) {
+        int start = tokenPointer.get( block );
+        int size = sizeToken[block * K];
+        int common = Math.min( size, length );
+        for (int i = 0; i < common; i++) {
+            int diff = term[i] - concatenation.charAt( start + i );
+            if (diff != 0) {
+                return diff;
+            }
         }
+        return length - size;
+    }
 
-        posAccordingToBlocks++;
-        String currToken;
-        while (posAccordingToBlocks < endBlock) {
-            currToken = concatenation.substring( startBlock,
-                    startBlock + (byte) sizeToken[posAccordingToBlocks] -
-                            (byte) prefixSize[posAccordingToBlocks] );
-            String prefixCurrToken = prevToken.substring( 0, (byte) prefixSize[posAccordingToBlocks] );
-            currToken = prefixCurrToken.concat( currToken );
-            if (currToken.equals( token )) return posAccordingToBlocks;
-
-            prevToken = currToken;
-            startBlock += (byte) sizeToken[posAccordingToBlocks] - (byte) prefixSize[posAccordingToBlocks];
-            posAccordingToBlocks++;
+    /***
+     * Search for the token in a given block (linear search), without building the terms of the block.
+     * The terms are walked from the first term of the block, keeping the length of the mutual prefix of the
+     * token and the current term: the next term keeps the first prefixSize chars of the current term, so the
+     * mutual prefix only has to be extended by the chars of the suffix of the next term.
+     * @param block - The block to search in
+     * @param last - The index of the last term of the block to compare
+     * @param term - The token to search for
+     * @param length - The length of the token
+     * @return The index of the given token in the dictionary, or -1 if it is not among the compared terms
+     */
+    private int searchInBlock(int block, int last, char[] term, int length) {
+        int first = block * K;
+        int end = Math.min( last + 1, tokensSize );
+        int start = tokenPointer.get( block ); // the start of the suffix of the current term
+        int matched = 0;
+        for (int i = first; i < end; i++) {
+            int prefix = i == first ? 0 : prefixSize[i]; // the first term of a block is whole
+            int size = sizeToken[i];
+            if (matched >= prefix) {
+                matched = prefix;
+                while (matched < size && matched < length &&
+                        term[matched] == concatenation.charAt( start + matched - prefix )) {
+                    matched++;
+                }
+                if (matched == length && matched == size) {
+                    return i;
+                }
+            }
+            start += size - prefix;
         }
         return -1;
     }
 
     /***
-     * Read bytes from a given file by the given positions
-     * @param dir - The directory in which the desired file is in
-     * @param fileName - The file to read bytes from
-     * @param start - Start position to read from
-     * @param end - End position to read until
-     * @return An int array that contains all numbers written in the given file from position start to
-     * position end
+     * Compares a term of the dictionary with a given term in place, without building the term
+     * @param index - Index of the term in the dictionary
+     * @param term - The term to compare with
+     * @param length - The length of the term
+     * @return Whether the term of the given index equals the given term
      */
-    public int[] readInfoTokenByPos(String dir, String fileName, int start, int end) {
-        try {
-            RandomAccessFile file = new RandomAccessFile( dir + fileName, "r" );
-            file.skipBytes( start );
-            // if there is no end position - end of file
-            if (end == -1) {
-                ArrayList<Byte> bytes = new ArrayList<>();
-                while (true) {
-                    try {
-                        byte curByte = file.readByte();
-                        bytes.add( curByte );
-                    } catch (EOFException e) {
-                        break;
-                    }
+    protected boolean termEquals(int index, char[] term, int length) {
+        return sizeToken[index] == length && searchInBlock( index / K, index, term, length ) == index;
+    }
+
+    /***
+     * Finds the terms of the dictionary within a number of edits of a term, by running a Levenshtein automaton
+     * over the sorted terms in place. The terms of a block all start with the mutual prefix of its first term
+     * and the first term of the next block, so a block is skipped without walking its terms if the automaton
+     * rejects that prefix, and in a block the automaton is continued from the prefix a term shares with the
+     * previous term.
+     * @param term - The term to match, as the terms of the dictionary are written
+     * @param maxEdits - The largest number of edits of a match
+     * @return The matching terms, in lexicographic order, mapped to their indexes in the dictionary
+     */
+    public Map<String, Integer> searchFuzzy(String term, int maxEdits) {
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton( term, maxEdits );
+        Map<String, Integer> matches = new LinkedHashMap<>();
+        char[] current = new char[256]; // the current term, built from the prefixes and suffixes
+        for (int block = 0; block < blocks; block++) {
+            int first = block * K;
+            int start = tokenPointer.get( block ); // the start of the suffix of the current term
+            int shared = block < blocks - 1 ? blocksPrefix( block ) : 0;
+            int stepped = 0; // the number of chars of the current term the automaton is after
+            boolean rejected = false; // whether no term that starts with the stepped chars can match
+            while (stepped < shared && !rejected) {
+                current[stepped] = concatenation.charAt( start + stepped );
+                rejected = !automaton.step( stepped, current[stepped] );
+                stepped++;
+            }
+            if (rejected) {
+                continue;
+            }
+            int end = Math.min( first + K, tokensSize );
+            for (int i = first; i < end; i++) {
+                int prefix = i == first ? 0 : prefixSize[i]; // the first term of a block is whole
+                int size = sizeToken[i];
+                concatenation.getChars( start, start + size - prefix, current, prefix );
+                start += size - prefix;
+                int kept = i == first ? shared : prefix; // the chars the term shares with the stepped ones
+                if (rejected && kept >= stepped) {
+                    continue;
+                }
+                if (stepped > kept) {
+                    stepped = kept;
+                    rejected = false;
+                }
+                while (stepped < size && !rejected) {
+                    rejected = !automaton.step( stepped, current[stepped] );
+                    stepped++;
                 }
-                file.seek( 0 );
-                file.close();
-                byte[] bytesArray = new byte[bytes.size()];
-                for (int i = 0; i < bytes.size(); i++) {
-                    bytesArray[i] = bytes.get( i );
+                if (!rejected && automaton.isMatch( size )) {
+                    matches.put( new String( current, 0, size ), i );
                 }
-                String numbers = new BigInteger( bytesArray ).toString( 2 );
-                String[] codes = getAllCodes( numbers );
-                return decodeGammaCodes( codes );
             }
-            file.seek( 0 );
-            file.close();
-        } catch (Exception e) {
-            System.out.println( "Error - reading file by position" );
         }
-        byte[] bytesArray = new byte[(end - start)];
-        try {
-            RandomAccessFile file = new RandomAccessFile( dir + fileName, "r" );
-            file.skipBytes( start );
-            for (int i = 0; i < (end - start); i++) {
-                bytesArray[i] = file.readByte();
-            }
-            file.seek( 0 );
-            file.close();
-        } catch (Exception e) {
-            System.out.println( "Error - reading file by position" );
+        return matches;
+    }
+
+    /***
+     * @param block - A block, not the last one
+     * @return The length of the mutual prefix of the first term of the block and of the next block
+     */
+    private int blocksPrefix(int block) {
+        int start = tokenPointer.get( block );
+        int nextStart = tokenPointer.get( block + 1 );
+        int common = Math.min( sizeToken[block * K], sizeToken[(block + 1) * K] );
+        int length = 0;
+        while (length < common && concatenation.charAt( start + length ) ==
+                concatenation.charAt( nextStart + length )) {
+            length++;
         }
-        String numbers = new BigInteger( bytesArray ).toString( 2 );
-        String[] codes = getAllCodes( numbers );
-        return decodeGammaCodes( codes );
+        return length;
+    }
+
+    /***
+     * Maps a whole file into memory, so it can be read without opening it again.
+     * @param fileName - The file to map
+     * @return A read only buffer of the file
+     */
+    protected static ByteBuffer mapFile(String fileName) throws IOException {
+        FileChannel channel = FileChannel.open( Paths.get( fileName ), StandardOpenOption.READ );
+        ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        channel.close();
+        return buffer;
+    }
+
+    /***
+     * Maps a whole file of ints into memory, so they can be read in bulk instead of one read call per int.
+     * @param fileName - The file to map
+     * @return A read only buffer of the ints of the file, positioned at the first one
+     */
+    protected static IntBuffer mapInts(String fileName) throws IOException {
+        return mapFile( fileName ).asIntBuffer();
+    }
+
+    /***
+     * Creates an iterator over the posting list of a token, decoded lazily from the mapped posting lists file
+     * @param index - Index of the token
+     * @return An iterator positioned before the first posting of the token
+     */
+    public PostingIterator postingIterator(int index) {
+        int start = postingLists.get( index );
+        int end = index < tokensSize - 1 ? postingLists.get( index + 1 ) : postings.limit();
+        return new PostingIterator( postings, start, end, version, codec, numbersPerPosting == 2 );
     }
 
     /***
@@ -293,7 +412,7 @@ public abstract class Dictionary {
      * @return The position of the given token's positing list
      */
     public int getPostingListPosOfToken(int index) {
-        return postingLists[index];
+        return postingLists.get( index );
     }
 
 }
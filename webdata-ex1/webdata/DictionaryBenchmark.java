@@ -0,0 +1,138 @@
+package webdata;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashSet;
+
+/***
+ * Compares the in place search of the tokens dictionary with the search it replaced, which built a String
+ * with substring and concat for every probe, in time and in memory allocated per lookup.
+ * Usage: DictionaryBenchmark dir inputFile [iterations]
+ * The looked up tokens are the distinct tokens of the review texts of the input file, as written (so some
+ * are capitalized), half of them with a letter appended so they are not in the dictionary.
+ */
+public class DictionaryBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 2 ? Integer.parseInt( args[2] ) : 20;
+        TokensDictionary dictionary = new TokensDictionary( args[0] );
+        LinkedHashSet<String> distinct = new LinkedHashSet<>();
+        BufferedReader reader = new BufferedReader( new FileReader( args[1] ) );
+        String line = reader.readLine();
+        while (line != null) {
+            if (line.contains( "review/text:" )) {
+                for (String word : line.substring( line.indexOf( ':' ) + 1 ).split( "[^A-Za-z0-9]+" )) {
+                    if (!word.isEmpty()) {
+                        distinct.add( distinct.size() % 2 == 0 ? word : word + "q" );
+                    }
+                }
+            }
+            line = reader.readLine();
+        }
+        reader.close();
+        String[] tokens = distinct.toArray( new String[0] );
+        for (String token : tokens) {
+            if (dictionary.searchToken( token ) != substringSearch( dictionary, token.toLowerCase() )) {
+                throw new IllegalStateException( "Different results for token: " + token );
+            }
+        }
+
+        for (int round = 0; round < ROUNDS; round++) { // the first rounds are a warm up
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            long checksum = 0;
+            for (int i = 0; i < iterations; i++) {
+                for (String token : tokens) {
+                    checksum += substringSearch( dictionary, token.toLowerCase() );
+                }
+            }
+            long substringTime = System.nanoTime() - start;
+            long substringBytes = allocatedBytes() - allocated;
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                for (String token : tokens) {
+                    checksum -= dictionary.searchToken( token );
+                }
+            }
+            long inPlaceTime = System.nanoTime() - start;
+            long inPlaceBytes = allocatedBytes() - allocated;
+
+            long lookups = (long) iterations * tokens.length;
+            System.out.printf( "substring %6.0f ns %6.0f bytes per lookup, in place %6.0f ns %6.0f bytes per lookup%s%n",
+                    (double) substringTime / lookups, (double) substringBytes / lookups,
+                    (double) inPlaceTime / lookups, (double) inPlaceBytes / lookups, checksum == 0 ? "" : " !" );
+        }
+    }
+
+    /***
+     * @return The bytes allocated by the current thread so far, or 0 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+                    Thread.currentThread().getId() );
+        }
+        return 0;
+    }
+
+    /***
+     * The search of the dictionary before the in place comparisons, kept to compare with.
+     */
+    private static int substringSearch(Dictionary dictionary, String token) {
+        return substringSearch( dictionary, 0, dictionary.blocks - 1, token );
+    }
+
+    private static int substringSearch(Dictionary d, int left, int right, String token) {
+        if (left < right) {
+            int middle = left + (right - left) / 2;
+            String first = blockFirst( d, middle );
+            if (token.equals( first )) {
+                return middle * d.K;
+            }
+            if (token.compareTo( first ) < 0) {
+                return substringSearch( d, left, middle - 1, token );
+            }
+            if (token.compareTo( blockFirst( d, middle + 1 ) ) < 0) {
+                return substringSearch( d, middle, middle, token );
+            }
+            return substringSearch( d, middle + 1, right, token );
+        }
+        if (right == left) {
+            if (!token.equals( blockFirst( d, left ) )) {
+                return substringBlockSearch( d, left, token );
+            }
+            return left * d.K;
+        }
+        return -1;
+    }
+
+    private static String blockFirst(Dictionary d, int block) {
+        return d.concatenation.substring( d.tokenPointer.get( block ), d.tokenPointer.get( block ) +
+                d.sizeToken[block * d.K] );
+    }
+
+    private static int substringBlockSearch(Dictionary d, int left, String token) {
+        int startBlock = d.tokenPointer.get( left );
+        int index = left * d.K;
+        String prevToken = blockFirst( d, left );
+        startBlock += d.sizeToken[index];
+        int endBlock = Math.min( index + d.K, d.tokensSize );
+        for (index++; index < endBlock; index++) {
+            int suffix = d.sizeToken[index] - d.prefixSize[index];
+            String currToken = prevToken.substring( 0, d.prefixSize[index] ).concat(
+                    d.concatenation.substring( startBlock, startBlock + suffix ) );
+            if (currToken.equals( token )) {
+                return index;
+            }
+            prevToken = currToken;
+            startBlock += suffix;
+        }
+        return -1;
+    }
+
+}
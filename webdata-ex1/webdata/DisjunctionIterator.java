@@ -0,0 +1,50 @@
+package webdata;
+
+/***
+ * Iterates over the reviews that any of the given iterators returns, merging them in review id order.
+ */
+public class DisjunctionIterator implements DocIterator {
+    private final DocIterator[] iterators;
+    private int doc;
+
+    /***
+     * @param iterators - The iterators to unite
+     */
+    public DisjunctionIterator(DocIterator... iterators) {
+        this.iterators = iterators.clone();
+        doc = -1;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance( doc + 1 );
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        // queries have few terms, so a scan for the smallest review is cheaper than a heap
+        int next = NO_MORE_DOCS;
+        for (DocIterator iterator : iterators) {
+            next = Math.min( next, iterator.advance( target ) );
+        }
+        doc = next;
+        return doc;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int cost() {
+        long cost = 0;
+        for (DocIterator iterator : iterators) {
+            cost += iterator.cost();
+        }
+        return (int) Math.min( cost, Integer.MAX_VALUE );
+    }
+}
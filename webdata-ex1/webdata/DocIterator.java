@@ -0,0 +1,34 @@
+package webdata;
+
+/***
+ * Iterates over a sorted set of review ids. Posting lists and the results of boolean queries over them are
+ * both iterated this way, so they can be combined with each other.
+ * The iterator starts before the first review; call nextDoc() to move to it.
+ */
+public interface DocIterator {
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /***
+     * Moves to the next review.
+     * @return The next review id, or NO_MORE_DOCS if there are no more reviews
+     */
+    int nextDoc();
+
+    /***
+     * Moves to the first review whose id is at least the given target.
+     * @param target - The review id to advance to
+     * @return The review id moved to, or NO_MORE_DOCS if there is no such review. If the current review is
+     * already at least the target, it stays the current review.
+     */
+    int advance(int target);
+
+    /***
+     * @return The current review id, -1 before the first review
+     */
+    int docId();
+
+    /***
+     * @return An upper bound on the number of reviews the iterator returns, used to order the evaluation
+     */
+    int cost();
+}
@@ -0,0 +1,57 @@
+package webdata;
+
+import java.io.IOException;
+
+/***
+ * Writes the gap and the frequency of each posting in turn as Elias delta codes: the gamma code of the
+ * length of the binary representation of the number, followed by the representation without its leading 1.
+ * A delta code is longer than a gamma code for the smallest numbers, and shorter from 32 up.
+ */
+public class EliasDeltaCodec implements PostingCodec {
+
+    @Override
+    public int id() {
+        return ELIAS_DELTA;
+    }
+
+    @Override
+    public String name() {
+        return "delta";
+    }
+
+    @Override
+    public boolean isByteAligned() {
+        return false;
+    }
+
+    @Override
+    public void writeBlock(BitOutputStream out, int[] gaps, int[] freqs, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            write( out, gaps[i] );
+            if (freqs != null) {
+                write( out, freqs[i] );
+            }
+        }
+    }
+
+    private static void write(BitOutputStream out, int number) throws IOException {
+        int length = 32 - Integer.numberOfLeadingZeros( number );
+        out.writeGamma( length );
+        out.writeBits( number, length - 1 );
+    }
+
+    @Override
+    public void readBlock(BitInputStream in, int[] gaps, int[] freqs, int count) {
+        for (int i = 0; i < count; i++) {
+            gaps[i] = read( in );
+            if (freqs != null) {
+                freqs[i] = read( in );
+            }
+        }
+    }
+
+    private static int read(BitInputStream in) {
+        int length = in.readGamma();
+        return (int) ((1L << (length - 1)) | in.readBits( length - 1 ));
+    }
+}
@@ -0,0 +1,47 @@
+package webdata;
+
+/***
+ * Decides which posting lists a segment of a PostingCache keeps within its byte budget.
+ * A policy is not thread safe: the cache calls it while holding the lock of its segment.
+ */
+public interface EvictionPolicy {
+
+    /***
+     * Looks up a posting list and records the access.
+     * @param key - The key of the posting list
+     * @return The cached posting list, or null if it is not cached
+     */
+    int[] get(String key);
+
+    /***
+     * @param key - The key of a posting list
+     * @return Whether the posting list is cached, without recording an access
+     */
+    boolean contains(String key);
+
+    /***
+     * Adds a posting list and evicts entries until the policy is within its budget again. The policy may
+     * reject the new entry itself, which counts as an eviction.
+     * @param key - The key of the posting list, which is not cached
+     * @param postings - The decoded posting list
+     * @param bytes - The memory the entry takes
+     * @return The number of entries evicted
+     */
+    int put(String key, int[] postings, long bytes);
+
+    /***
+     * Evicts the entry the policy would evict first, to make room in a budget shared with other policies.
+     * @return The memory the evicted entry took, or 0 if there are no entries
+     */
+    long evict();
+
+    /***
+     * @return The memory taken by the cached entries
+     */
+    long bytes();
+
+    /***
+     * @return The number of cached entries
+     */
+    int entries();
+}
@@ -0,0 +1,55 @@
+package webdata;
+
+/***
+ * Iterates over the reviews that one iterator returns and another does not.
+ */
+public class ExclusionIterator implements DocIterator {
+    private final DocIterator include;
+    private final DocIterator exclude;
+    private int doc;
+
+    /***
+     * @param include - The reviews to return
+     * @param exclude - The reviews to leave out
+     */
+    public ExclusionIterator(DocIterator include, DocIterator exclude) {
+        this.include = include;
+        this.exclude = exclude;
+        doc = -1;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doNext( include.nextDoc() );
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        return doNext( include.advance( target ) );
+    }
+
+    /***
+     * @param target - The current review of the included iterator
+     * @return The first review from the given one on that is not excluded, or NO_MORE_DOCS if there is none
+     */
+    private int doNext(int target) {
+        while (target != NO_MORE_DOCS && exclude.advance( target ) == target) {
+            target = include.nextDoc();
+        }
+        doc = target;
+        return doc;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int cost() {
+        return include.cost();
+    }
+}
@@ -0,0 +1,73 @@
+package webdata;
+
+/***
+ * A count-min sketch that estimates how often keys were accessed recently, in little memory.
+ * Every key has a 4 bit counter in each of 4 rows, at a position given by a different hash of the key
+ * in every row, and its estimate is the smallest of its counters. After a number of accesses all the
+ * counters are halved, so keys that were popular long ago fade out.
+ */
+public class FrequencySketch {
+    private static final int ROWS = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize; // the number of accesses between halvings
+    private int accesses;
+
+    /***
+     * @param width - The number of counters in each row, rounded up to a power of 2
+     */
+    public FrequencySketch(int width) {
+        int size = Integer.highestOneBit( Math.max( 16, width - 1 ) << 1 );
+        counters = new byte[ROWS][size];
+        mask = size - 1;
+        sampleSize = 10 * size;
+    }
+
+    /***
+     * Records an access to a key.
+     * @param key - The accessed key
+     */
+    public void increment(String key) {
+        int hash = key.hashCode();
+        boolean added = false;
+        for (int row = 0; row < ROWS; row++) {
+            int index = index( hash, row );
+            if (counters[row][index] < MAX_COUNT) {
+                counters[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++accesses == sampleSize) {
+            halve();
+        }
+    }
+
+    /***
+     * @param key - A key
+     * @return The estimated number of recent accesses to the key, at most 15
+     */
+    public int frequency(String key) {
+        int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < ROWS; row++) {
+            frequency = Math.min( frequency, counters[row][index( hash, row )] );
+        }
+        return frequency;
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void halve() {
+        for (byte[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+        accesses /= 2;
+    }
+}
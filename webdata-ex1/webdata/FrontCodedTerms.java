@@ -0,0 +1,88 @@
+package webdata;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/***
+ * Reads back the terms of a front coded dictionary from its files, in the order they were written, so
+ * structures built over all the terms after the dictionary is written do not have to keep the terms in memory.
+ * The sizes file holds the length of each term and the length of the prefix it shares with the previous
+ * term, as ints, and the long string holds the rest of each term, or the whole term at the start of a block.
+ * The files are closed once the last term is read.
+ */
+public class FrontCodedTerms implements Iterator<String> {
+    private final DataInputStream sizes;
+    private final Reader longString;
+    private final int blockSize;
+    private final int terms;
+    private int read; // the number of terms read so far
+    private char[] term; // the characters of the last term read
+    private boolean closed;
+
+    /***
+     * @param sizesFile - The file of the lengths and the prefix lengths of the terms
+     * @param longStringFile - The file of the concatenated terms
+     * @param terms - The number of terms in the dictionary
+     * @param blockSize - The number of terms in a block, the first of which is written whole
+     */
+    public FrontCodedTerms(String sizesFile, String longStringFile, int terms, int blockSize) throws IOException {
+        sizes = new DataInputStream( new BufferedInputStream( new FileInputStream( sizesFile ) ) );
+        longString = new BufferedReader( new FileReader( longStringFile ) );
+        this.blockSize = blockSize;
+        this.terms = terms;
+        term = new char[64];
+        if (terms == 0) {
+            close();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return read < terms;
+    }
+
+    @Override
+    public String next() {
+        if (read == terms) {
+            throw new NoSuchElementException();
+        }
+        try {
+            int length = sizes.readInt();
+            int prefix = sizes.readInt();
+            if (read % blockSize == 0) {
+                prefix = 0;
+            }
+            if (length > term.length) {
+                char[] longer = new char[Math.max( length, 2 * term.length )];
+                System.arraycopy( term, 0, longer, 0, prefix );
+                term = longer;
+            }
+            for (int i = prefix; i < length; ) {
+                int count = longString.read( term, i, length - i );
+                if (count < 0) {
+                    throw new EOFException( "The long string ended before term " + read );
+                }
+                i += count;
+            }
+            read++;
+            if (read == terms) {
+                close();
+            }
+            return new String( term, 0, length );
+        } catch (IOException e) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /***
+     * Closes the files, if the terms were not all read.
+     */
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            sizes.close();
+            longString.close();
+        }
+    }
+}
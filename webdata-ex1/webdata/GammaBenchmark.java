@@ -0,0 +1,105 @@
+package webdata;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.Random;
+
+/***
+ * Compares the byte padded Gamma encoder and its BigInteger string decoding with the bit packed gamma
+ * codes of BitOutputStream and BitInputStream.
+ * Usage: GammaBenchmark [lists] [listSize]
+ * The numbers are posting list like: mostly small gaps and frequencies with a long tail.
+ */
+public class GammaBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int lists = args.length > 0 ? Integer.parseInt( args[0] ) : 200;
+        int listSize = args.length > 1 ? Integer.parseInt( args[1] ) : 1000;
+        Random random = new Random( 1 );
+        int[][] numbers = new int[lists][listSize];
+        for (int[] list : numbers) {
+            for (int i = 0; i < listSize; i++) {
+                list[i] = 1 + (int) Math.min( Integer.MAX_VALUE - 1, Math.abs( random.nextGaussian() ) *
+                        (random.nextInt( 10 ) == 0 ? 5000 : 8) );
+            }
+        }
+        long total = (long) lists * listSize;
+        Gamma gamma = new Gamma();
+        Dictionary legacy = new Dictionary() {
+            public int searchToken(String token) {
+                return -1;
+            }
+        };
+
+        for (int round = 0; round < ROUNDS; round++) { // the first rounds are a warm up
+            long start = System.nanoTime();
+            byte[][] legacyLists = new byte[lists][];
+            for (int l = 0; l < lists; l++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                for (int number : numbers[l]) {
+                    bytes.write( gamma.encode( number ) );
+                }
+                legacyLists[l] = bytes.toByteArray();
+            }
+            long legacyEncode = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long legacySum = 0;
+            for (byte[] list : legacyLists) {
+                for (String code : legacy.getAllCodes( new BigInteger( list ).toString( 2 ) )) {
+                    legacySum += gamma.decode( code );
+                }
+            }
+            long legacyDecode = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            byte[][] packedLists = new byte[lists][];
+            for (int l = 0; l < lists; l++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                BitOutputStream bits = new BitOutputStream( bytes );
+                for (int number : numbers[l]) {
+                    bits.writeGamma( number );
+                }
+                bits.close();
+                packedLists[l] = bytes.toByteArray();
+            }
+            long packedEncode = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long packedSum = 0;
+            for (byte[] list : packedLists) {
+                BitInputStream bits = new BitInputStream( list );
+                for (int i = 0; i < listSize; i++) {
+                    packedSum += bits.readGamma();
+                }
+            }
+            long packedDecode = System.nanoTime() - start;
+
+            if (round == ROUNDS - 1) {
+                if (legacySum != packedSum) {
+                    throw new IllegalStateException( "The decoded numbers are different" );
+                }
+                System.out.printf( "numbers: %d in %d lists%n", total, lists );
+                System.out.printf( "Gamma:        %.2f bits/number, encode %.1f ns/number, decode %.1f ns/number%n",
+                        8.0 * size( legacyLists ) / total, (double) legacyEncode / total,
+                        (double) legacyDecode / total );
+                System.out.printf( "bit packed:   %.2f bits/number, encode %.1f ns/number, decode %.1f ns/number%n",
+                        8.0 * size( packedLists ) / total, (double) packedEncode / total,
+                        (double) packedDecode / total );
+            }
+        }
+    }
+
+    /***
+     * @param lists - Encoded lists
+     * @return The number of bytes of all the lists
+     */
+    private static long size(byte[][] lists) {
+        long size = 0;
+        for (byte[] list : lists) {
+            size += list.length;
+        }
+        return size;
+    }
+}
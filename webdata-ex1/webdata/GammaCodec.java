@@ -0,0 +1,45 @@
+package webdata;
+
+import java.io.IOException;
+
+/***
+ * Writes the gap and the frequency of each posting in turn as gamma codes. The blocks are back to back
+ * with no mark between them, so a list is the same as in the indexes written before the codecs were added.
+ */
+public class GammaCodec implements PostingCodec {
+
+    @Override
+    public int id() {
+        return GAMMA;
+    }
+
+    @Override
+    public String name() {
+        return "gamma";
+    }
+
+    @Override
+    public boolean isByteAligned() {
+        return false;
+    }
+
+    @Override
+    public void writeBlock(BitOutputStream out, int[] gaps, int[] freqs, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeGamma( gaps[i] );
+            if (freqs != null) {
+                out.writeGamma( freqs[i] );
+            }
+        }
+    }
+
+    @Override
+    public void readBlock(BitInputStream in, int[] gaps, int[] freqs, int count) {
+        for (int i = 0; i < count; i++) {
+            gaps[i] = in.readGamma();
+            if (freqs != null) {
+                freqs[i] = in.readGamma();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package webdata;
+
+import java.io.IOException;
+
+/***
+ * Writes the gaps of a block and then its frequencies in groups of four numbers: a byte that holds the
+ * number of bytes of each number of the group less one, two bits each from the highest, followed by the
+ * numbers, the lowest byte first. The last group of the gaps or the frequencies may have fewer numbers.
+ * The lengths of a whole group are known from one byte, so a group is decoded without a test per byte.
+ */
+public class GroupVarintCodec implements PostingCodec {
+
+    @Override
+    public int id() {
+        return GROUP_VARINT;
+    }
+
+    @Override
+    public String name() {
+        return "groupvarint";
+    }
+
+    @Override
+    public boolean isByteAligned() {
+        return true;
+    }
+
+    @Override
+    public void writeBlock(BitOutputStream out, int[] gaps, int[] freqs, int count) throws IOException {
+        write( out, gaps, count );
+        if (freqs != null) {
+            write( out, freqs, count );
+        }
+    }
+
+    private static void write(BitOutputStream out, int[] numbers, int count) throws IOException {
+        for (int group = 0; group < count; group += 4) {
+            int end = Math.min( count, group + 4 );
+            int lengths = 0;
+            for (int i = group; i < group + 4; i++) {
+                lengths = (lengths << 2) | (i < end ? bytes( numbers[i] ) - 1 : 0);
+            }
+            out.writeBits( lengths, 8 );
+            for (int i = group; i < end; i++) {
+                for (int b = 0, length = bytes( numbers[i] ); b < length; b++) {
+                    out.writeBits( numbers[i] >>> (8 * b), 8 );
+                }
+            }
+        }
+    }
+
+    /***
+     * @return The number of bytes a number needs, between 1 and 4
+     */
+    private static int bytes(int number) {
+        return Math.max( 1, (32 - Integer.numberOfLeadingZeros( number ) + 7) >>> 3 );
+    }
+
+    @Override
+    public void readBlock(BitInputStream in, int[] gaps, int[] freqs, int count) {
+        read( in, gaps, count );
+        if (freqs != null) {
+            read( in, freqs, count );
+        }
+    }
+
+    private static void read(BitInputStream in, int[] numbers, int count) {
+        for (int group = 0; group < count; group += 4) {
+            int lengths = in.readByte();
+            int end = Math.min( count, group + 4 );
+            for (int i = group; i < end; i++) {
+                int length = ((lengths >>> (2 * (3 - (i - group)))) & 3) + 1;
+                int number = 0;
+                for (int b = 0; b < length; b++) {
+                    number |= in.readByte() << (8 * b);
+                }
+                numbers[i] = number;
+            }
+        }
+    }
+}
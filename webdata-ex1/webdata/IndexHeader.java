@@ -0,0 +1,160 @@
+package webdata;
+
+import java.io.*;
+
+/***
+ * The header of an index, which records the version of the on disk format of the index and the optional
+ * parts the index was written with.
+ * Indexes written before the header was added have no header file, and are of the legacy version.
+ */
+public class IndexHeader {
+    /***
+     * Each gamma code is padded to whole bytes and prefixed by a byte that counts the padding.
+     */
+    public static final int LEGACY_VERSION = 1;
+    /***
+     * The gamma codes are written back to back. Each posting list starts at a whole byte with the gamma
+     * code of the number of its postings, and the frequencies file is one stream of gamma codes.
+     */
+    public static final int BIT_PACKED_VERSION = 2;
+    /***
+     * As the bit packed version, and posting lists longer than SKIP_INTERVAL postings hold skip entries
+     * after their length, so they can be advanced to a review id without decoding all of them.
+     */
+    public static final int SKIPS_VERSION = 3;
+    public static final int CURRENT_VERSION = SKIPS_VERSION;
+
+    /***
+     * The number of postings between two skip entries.
+     */
+    public static final int SKIP_INTERVAL = 128;
+
+    /***
+     * The index holds the positions of the tokens in the reviews (from the skips version).
+     */
+    public static final int POSITIONS_FLAG = 1;
+
+    /***
+     * The index holds minimal perfect hashes of the tokens and products dictionaries (from the bit packed
+     * version).
+     */
+    public static final int PERFECT_HASH_FLAG = 2;
+
+    /***
+     * The index holds a trie of the tokens, for prefix and wildcard queries (from the bit packed version).
+     */
+    public static final int TERM_TRIE_FLAG = 4;
+
+    private static final String FILE_NAME = "\\header.bin";
+    private static final int MAGIC = 0x57444958; // "WDIX"
+
+    private final int version;
+    private final int flags; // the optional parts of the index
+    private final int codec; // the id of the codec of the posting lists
+
+    /***
+     * @param version - The version of the on disk format
+     */
+    public IndexHeader(int version) {
+        this( version, 0 );
+    }
+
+    /***
+     * @param version - The version of the on disk format
+     * @param flags - The optional parts of the index, a combination of the flags above
+     */
+    public IndexHeader(int version, int flags) {
+        this( version, flags, PostingCodec.GAMMA );
+    }
+
+    /***
+     * @param version - The version of the on disk format
+     * @param flags - The optional parts of the index, a combination of the flags above
+     * @param codec - The id of the codec of the posting lists (from the bit packed version)
+     */
+    public IndexHeader(int version, int flags, int codec) {
+        this.version = version;
+        this.flags = flags;
+        this.codec = codec;
+    }
+
+    /***
+     * Reads the header of the index in the given directory.
+     * @param dir - The directory of the index
+     * @return The header of the index
+     */
+    public static IndexHeader read(String dir) {
+        File headerFile = new File( dir + FILE_NAME );
+        if (!headerFile.exists()) {
+            return new IndexHeader( LEGACY_VERSION );
+        }
+        try {
+            DataInputStream header = new DataInputStream( new FileInputStream( headerFile ) );
+            int magic = header.readInt();
+            int version = header.readInt();
+            int flags = header.available() >= 4 ? header.readInt() : 0; // headers without flags have none
+            // headers without a codec are of gamma coded posting lists
+            int codec = header.available() >= 4 ? header.readInt() : PostingCodec.GAMMA;
+            header.close();
+            if (magic == MAGIC) {
+                return new IndexHeader( version, flags, codec );
+            }
+        } catch (Exception e) {
+            System.out.println( "Error - header" );
+        }
+        return new IndexHeader( LEGACY_VERSION );
+    }
+
+    /***
+     * Writes the header into the given directory. The legacy version has no header file.
+     * @param dir - The directory of the index
+     */
+    public void write(String dir) throws IOException {
+        File headerFile = new File( dir + FILE_NAME );
+        if (version == LEGACY_VERSION) {
+            headerFile.delete();
+            return;
+        }
+        DataOutputStream header = new DataOutputStream( new FileOutputStream( headerFile ) );
+        header.writeInt( MAGIC );
+        header.writeInt( version );
+        header.writeInt( flags );
+        header.writeInt( codec );
+        header.close();
+    }
+
+    /***
+     * @return The version of the on disk format
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /***
+     * @return The codec of the posting lists
+     */
+    public PostingCodec getPostingCodec() {
+        return PostingCodec.forId( codec );
+    }
+
+    /***
+     * @return Whether the index holds the positions of the tokens in the reviews
+     */
+    public boolean hasPositions() {
+        return (flags & POSITIONS_FLAG) != 0;
+    }
+
+    /***
+     * @return Whether the index holds perfect hashes of its dictionaries
+     */
+    public boolean hasPerfectHash() {
+        return (flags & PERFECT_HASH_FLAG) != 0;
+    }
+
+    /***
+     * @return Whether the index holds a trie of its tokens
+     */
+    public boolean hasTermTrie() {
+        return (flags & TERM_TRIE_FLAG) != 0;
+    }
+}
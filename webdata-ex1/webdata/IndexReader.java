@@ -1,36 +1,81 @@
 package webdata;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Vector;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Reads an index written by SlowIndexWriter
+ * <p>
+ * An IndexReader is safe for use by any number of threads at once, with no locks on the read path: the
+ * index files are read fully or mapped when the reader is created and only read afterwards, through
+ * absolute reads of the mapped buffers, and every call keeps its state (iterators, scratch buffers of the
+ * thread) to itself. The only shared mutable state is the optional posting cache, which locks one of its
+ * segments at a time, and the norms of the ranked search, which are computed once at the first search.
+ * The iterators and enumerations a call returns are not safe to share between threads.
+ */
 public class IndexReader {
-    private String dir;
-    private TokensDictionary dictionary;
-    private ProductIdDictionary dictionaryProduct;
-    private ReviewsInformation reviewInfo;
-    private int reviews;
-    private int tokens;
+    private final String dir;
+    private final TokensDictionary dictionary;
+    private final ProductIdDictionary dictionaryProduct;
+    private final ReviewsInformation reviewInfo;
+    private final IndexHeader header;
+    private final RankedSearch rankedSearch;
+    private final PostingCache cache; // null when the posting lists are not cached
+    private static final int PAGE_SHIFT = 10; // 1024 reviews, a page of 4KB of the review lengths file
+    private static final int MIN_SORTED_BATCH = 256; // smaller batches cost more to sort than they save
+    public static final int DEFAULT_MAX_EXPANSIONS = 1024;
+    public static final int MAX_EDITS = 2; // more edits match too many tokens to prune the dictionary
+    private volatile int maxExpansions = DEFAULT_MAX_EXPANSIONS;
+    private final int reviews;
+    private final int tokens;
 
     /**
      * Creates an IndexReader which will read from the given directory
      */
     public IndexReader(String dir) {
+        this( dir, null );
+    }
+
+    /**
+     * Creates an IndexReader which will read from the given directory, and keeps the posting lists it
+     * decodes for getReviewsWithToken and getProductReviews in the given cache
+     * The cache may be null, and may be shared by readers of the same index only
+     */
+    public IndexReader(String dir, PostingCache cache) {
         this.dir = dir;
-        dictionary = new TokensDictionary( dir ); // tokens dictionary
-        dictionaryProduct = new ProductIdDictionary( dir ); // productsID dictionary
+        this.cache = cache;
+        header = IndexHeader.read( dir ); // the on disk format of the index
+        dictionary = new TokensDictionary( dir, header ); // tokens dictionary
+        dictionaryProduct = new ProductIdDictionary( dir, header ); // productsID dictionary
         reviewInfo = new ReviewsInformation( dir );
+        rankedSearch = new RankedSearch( dictionary, reviewInfo );
         reviews = dictionary.getNumOfReviews();
         tokens = dictionary.getNumOfTokens();
     }
 
+    /**
+     * Returns the version of the on disk format of the index
+     */
+    public int getFormatVersion() {
+        return header.getVersion();
+    }
+
+    /**
+     * Returns whether the index holds the positions of the tokens, which phrase and proximity queries need
+     */
+    public boolean hasPositions() {
+        return header.hasPositions();
+    }
+
     /**
      * Returns the product identifier for the given review
      * Returns null if there is no review with the given identifier
      */
     public String getProductId(int reviewId) {
-        if ((reviewId > reviews) || (reviewId < 0)) {
+        if ((reviewId > reviews) || (reviewId < 1)) {
             return null;
         }
         return dictionaryProduct.getProductId( reviewId - 1 );
@@ -41,7 +86,7 @@ public class IndexReader {
      * Returns -1 if there is no review with the given identifier
      */
     public int getReviewScore(int reviewId) {
-        if ((reviewId > reviews) || (reviewId < 0)) {
+        if ((reviewId > reviews) || (reviewId < 1)) {
             return -1;
         }
         return reviewInfo.getReviewScore( reviewId );
@@ -52,7 +97,7 @@ public class IndexReader {
      * Returns -1 if there is no review with the given identifier
      */
     public int getReviewHelpfulnessNumerator(int reviewId) {
-        if ((reviewId > reviews) || (reviewId < 0)) {
+        if ((reviewId > reviews) || (reviewId < 1)) {
             return -1;
         }
         return reviewInfo.getReviewHelpfulnessNumeratorDenominator( reviewId, true );
@@ -63,7 +108,7 @@ public class IndexReader {
      * Returns -1 if there is no review with the given identifier
      */
     public int getReviewHelpfulnessDenominator(int reviewId) {
-        if ((reviewId > reviews) || (reviewId < 0)) {
+        if ((reviewId > reviews) || (reviewId < 1)) {
             return -1;
         }
         return reviewInfo.getReviewHelpfulnessNumeratorDenominator( reviewId, false );
@@ -74,19 +119,133 @@ public class IndexReader {
      * Returns -1 if there is no review with the given identifier
      */
     public int getReviewLength(int reviewId) {
-        if ((reviewId > reviews) || (reviewId < 0)) {
+        if ((reviewId > reviews) || (reviewId < 1)) {
             return -1;
         }
         return reviewInfo.getReviewLength( reviewId );
     }
 
+    /**
+     * Fills the given arrays with the metadata of the given reviews: scores[i] is the score of review
+     * reviewIds[i], and so on for the helpfulness numerators and denominators and the lengths
+     * An array may be null if its metadata is not needed
+     * The ids are visited by increasing page of the column files, so the files are read sequentially
+     * <p>
+     * The values of an id with no review are -1
+     */
+    public void getReviewsMetadata(int[] reviewIds, int[] scores, int[] numerators, int[] denominators,
+                                   int[] lengths) {
+        int[] order = sortedOrder( reviewIds );
+        for (int i = 0; i < reviewIds.length; i++) {
+            int index = order == null ? i : order[i];
+            int reviewId = reviewIds[index];
+            boolean exists = reviewId >= 1 && reviewId <= reviews;
+            if (scores != null) {
+                scores[index] = exists ? reviewInfo.getReviewScore( reviewId ) : -1;
+            }
+            if (numerators != null) {
+                numerators[index] = exists ? reviewInfo.getReviewHelpfulnessNumeratorDenominator( reviewId, true ) : -1;
+            }
+            if (denominators != null) {
+                denominators[index] = exists ? reviewInfo.getReviewHelpfulnessNumeratorDenominator( reviewId, false ) : -1;
+            }
+            if (lengths != null) {
+                lengths[index] = exists ? reviewInfo.getReviewLength( reviewId ) : -1;
+            }
+        }
+    }
+
+    /**
+     * Fills scores[i] with the score of review reviewIds[i], or -1 if there is no such review
+     */
+    public void getReviewScores(int[] reviewIds, int[] scores) {
+        getReviewsMetadata( reviewIds, scores, null, null, null );
+    }
+
+    /**
+     * Fills numerators[i] with the helpfulness numerator of review reviewIds[i], or -1 if there is no such
+     * review
+     */
+    public void getReviewHelpfulnessNumerators(int[] reviewIds, int[] numerators) {
+        getReviewsMetadata( reviewIds, null, numerators, null, null );
+    }
+
+    /**
+     * Fills denominators[i] with the helpfulness denominator of review reviewIds[i], or -1 if there is no
+     * such review
+     */
+    public void getReviewHelpfulnessDenominators(int[] reviewIds, int[] denominators) {
+        getReviewsMetadata( reviewIds, null, null, denominators, null );
+    }
+
+    /**
+     * Fills lengths[i] with the number of tokens of review reviewIds[i], or -1 if there is no such review
+     */
+    public void getReviewLengths(int[] reviewIds, int[] lengths) {
+        getReviewsMetadata( reviewIds, null, null, null, lengths );
+    }
+
+    /**
+     * Returns the indexes of the given ids ordered by the page of the column files they are in, or null if
+     * the ids are already sorted or too few to share pages. The ids are counting sorted by their page, which
+     * is enough to read the files sequentially and takes linear time.
+     */
+    private int[] sortedOrder(int[] reviewIds) {
+        boolean sorted = reviewIds.length < MIN_SORTED_BATCH;
+        for (int i = 1; i < reviewIds.length && sorted; i++) {
+            sorted = reviewIds[i - 1] <= reviewIds[i];
+        }
+        if (sorted) {
+            return null;
+        }
+        int pages = (reviews >>> PAGE_SHIFT) + 2; // and one for the ids with no review
+        int[] starts = new int[pages + 1];
+        for (int reviewId : reviewIds) {
+            starts[page( reviewId ) + 1]++;
+        }
+        for (int i = 1; i <= pages; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] order = new int[reviewIds.length];
+        for (int i = 0; i < reviewIds.length; i++) {
+            order[starts[page( reviewIds[i] )]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Returns the page of the column files that holds a review, or 0 if there is no such review
+     */
+    private int page(int reviewId) {
+        return reviewId < 1 || reviewId > reviews ? 0 : 1 + (reviewId >>> PAGE_SHIFT);
+    }
+
     /**
      * Return the number of reviews containing a given token (i.e., word)
      * Returns 0 if there are no reviews containing this token
      */
     public int getTokenFrequency(String token) {
-        return Collections.list( getReviewsWithToken( token ) ).size() / 2;
+        int index = dictionary.searchToken( token.toLowerCase() );
+        if ((index <= tokens) && index >= 0) {
+            return dictionary.getDocumentFrequency( index );
+        }
+        return 0;
+    }
 
+    /**
+     * Return the statistics of a given token (i.e., word) that a query can be planned by: the number of
+     * reviews containing it, the number of times it appears in the reviews, and an upper bound on its BM25
+     * score in any review
+     * Returns statistics of zeros if there are no reviews containing this token
+     */
+    public TermStatistics getTokenStatistics(String token) {
+        int index = dictionary.searchToken( token.toLowerCase() );
+        if ((index <= tokens) && index >= 0) {
+            int documentFrequency = dictionary.getDocumentFrequency( index );
+            double maxScore = Bm25.idf( reviews, documentFrequency ) * dictionary.getMaxTfPart( index );
+            return new TermStatistics( documentFrequency, dictionary.getFrequencyOfToken( index ), maxScore );
+        }
+        return new TermStatistics( 0, 0, 0 );
     }
 
     /**
@@ -119,26 +278,164 @@ public class IndexReader {
      * Returns an empty Enumeration if there are no reviews containing this token
      */
     public Enumeration<Integer> getReviewsWithToken(String token) {
+        if (cache == null) {
+            return new PostingEnumeration( getTokenPostings( token ) );
+        }
+        return new ArrayEnumeration( decodeReviewsWithToken( token ) );
+    }
+
+    /**
+     * Returns the integers getReviewsWithToken returns for a given token, all decoded, from the cache if
+     * there is one
+     */
+    int[] decodeReviewsWithToken(String token) {
+        if (cache == null) {
+            return decode( getTokenPostings( token ) );
+        }
+        String key = "t" + token.toLowerCase(); // tokens and product ids are told apart by the first char
+        int[] postings = cache.get( key );
+        if (postings == null) {
+            postings = decode( getTokenPostings( token ) );
+            cache.put( key, postings );
+        }
+        return postings;
+    }
+
+    /**
+     * Return an iterator over the postings of a given token (i.e., word), sorted by review id,
+     * which decodes the postings only as it is advanced
+     * <p>
+     * Returns an empty iterator if there are no reviews containing this token
+     */
+    public PostingIterator getTokenPostings(String token) {
         int index = dictionary.searchToken( token.toLowerCase() );
         if ((index <= tokens) && index >= 0) {
-            int position = dictionary.getPostingListPosOfToken( index );
-            int nextPosition = -1;
-            if (index < tokens - 1) {
-                nextPosition = dictionary.getPostingListPosOfToken( index + 1 );
-            }
-            int[] reviewsFreq = dictionary.readInfoTokenByPos( dir, "\\postingLists.bin", position,
-                    nextPosition );
-            int prevRev = 0;
-            for (int i = 0; i < reviewsFreq.length; i += 2) {
-                reviewsFreq[i] += prevRev;
-                prevRev = reviewsFreq[i];
-            }
-            Integer[] enumList = Arrays.stream( reviewsFreq ).boxed().toArray( Integer[]::new );
-            Vector<Integer> reviewsAndFreqs = new Vector<>( Arrays.asList( enumList ) );
-            return reviewsAndFreqs.elements();
+            return dictionary.postingIterator( index );
+        }
+        return PostingIterator.empty();
+    }
 
+    /**
+     * Return the tokens that start with a given prefix, in lexicographic order, each mapped to an iterator
+     * over its postings
+     * At most getMaxExpansions() tokens are returned, the first ones in lexicographic order
+     * <p>
+     * Throws IllegalStateException if the index has no trie of the tokens
+     */
+    public Map<String, PostingIterator> getTokensWithPrefix(String prefix) {
+        return postingsOf( trie().expandPrefix( prefix.toLowerCase(), maxExpansions ) );
+    }
+
+    /**
+     * Return the number of tokens that start with a given prefix, without expanding them
+     * <p>
+     * Throws IllegalStateException if the index has no trie of the tokens
+     */
+    public int getTokenCountWithPrefix(String prefix) {
+        return trie().countPrefix( prefix.toLowerCase() );
+    }
+
+    /**
+     * Return the tokens that match a wildcard pattern, where '?' matches any single character and '*' any
+     * sequence of characters, in lexicographic order, each mapped to an iterator over its postings
+     * At most getMaxExpansions() tokens are returned, the first ones in lexicographic order
+     * <p>
+     * Throws IllegalStateException if the index has no trie of the tokens, and IllegalArgumentException if
+     * the pattern is longer than 63 characters
+     */
+    public Map<String, PostingIterator> getTokensMatching(String pattern) {
+        return postingsOf( trie().expandWildcard( pattern.toLowerCase(), maxExpansions ) );
+    }
+
+    /**
+     * Return the tokens within a given number of edits (insertions, deletions and substitutions of a
+     * character) of a given token, in lexicographic order, each mapped to the number of reviews containing it
+     * The dictionary is scanned in place, skipping the blocks of tokens that can not be within the edits
+     * <p>
+     * Throws IllegalArgumentException if the number of edits is not 0, 1 or 2
+     */
+    public Map<String, Integer> getFuzzyTokens(String token, int maxEdits) {
+        if (maxEdits < 0 || maxEdits > MAX_EDITS) {
+            throw new IllegalArgumentException( "The number of edits must be between 0 and " + MAX_EDITS );
+        }
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : dictionary.searchFuzzy( token.toLowerCase(), maxEdits ).entrySet()) {
+            frequencies.put( entry.getKey(), dictionary.getDocumentFrequency( entry.getValue() ) );
         }
-        return new Vector<Integer>().elements();
+        return frequencies;
+    }
+
+    /**
+     * Returns the largest number of tokens a prefix or a wildcard pattern is expanded to
+     */
+    public int getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    /**
+     * Sets the largest number of tokens a prefix or a wildcard pattern is expanded to
+     */
+    public void setMaxExpansions(int maxExpansions) {
+        if (maxExpansions < 1) {
+            throw new IllegalArgumentException( "The max expansions must be positive" );
+        }
+        this.maxExpansions = maxExpansions;
+    }
+
+    private TermTrie trie() {
+        if (dictionary.getTrie() == null) {
+            throw new IllegalStateException( "The index has no trie of the tokens" );
+        }
+        return dictionary.getTrie();
+    }
+
+    private Map<String, PostingIterator> postingsOf(Map<String, Integer> ordinals) {
+        Map<String, PostingIterator> postings = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : ordinals.entrySet()) {
+            postings.put( entry.getKey(), dictionary.postingIterator( entry.getValue() ) );
+        }
+        return postings;
+    }
+
+    /**
+     * Return an iterator over the ids of the reviews that match a boolean query, sorted by id
+     * The query is made of words, product ids written as "product:B001E4KFG0", AND, OR, NOT and parentheses
+     * (see BooleanQuery), and is evaluated on the postings as the iterator is advanced
+     * <p>
+     * Throws IllegalArgumentException if the query is malformed
+     */
+    public DocIterator getReviewsMatching(String query) {
+        return BooleanQuery.parse( this, query );
+    }
+
+    /**
+     * Return an iterator over the ids of the reviews that contain the tokens of a phrase one after another,
+     * sorted by id
+     * <p>
+     * Throws IllegalStateException if the index has no positions
+     */
+    public DocIterator getReviewsWithPhrase(String phrase) {
+        return PhraseIterator.phrase( this, phrase );
+    }
+
+    /**
+     * Return an iterator over the ids of the reviews that contain all the tokens of a text, in any order,
+     * at most distance tokens apart (1 for adjacent tokens), sorted by id
+     * <p>
+     * Throws IllegalStateException if the index has no positions
+     */
+    public DocIterator getReviewsWithinDistance(String text, int distance) {
+        return PhraseIterator.near( this, text, distance );
+    }
+
+    /**
+     * Return the k reviews with the highest BM25 score for a free text query, best first
+     * Reviews that contain any of the query tokens are ranked; ties are broken by review id
+     * <p>
+     * Returns an empty list if no review contains a query token
+     */
+    public List<SearchResult> search(String query, int k) {
+        return rankedSearch.search( query, k );
     }
 
     /**
@@ -156,26 +453,64 @@ public class IndexReader {
      * Returns an empty Enumeration if there are no reviews for this product
      */
     public Enumeration<Integer> getProductReviews(String productId) {
+        if (cache == null) {
+            return new PostingEnumeration( getProductPostings( productId ) );
+        }
+        return new ArrayEnumeration( decodeProductReviews( productId ) );
+    }
+
+    /**
+     * Returns the integers getProductReviews returns for a given product identifier, all decoded, from the
+     * cache if there is one
+     */
+    int[] decodeProductReviews(String productId) {
+        if (cache == null) {
+            return decode( getProductPostings( productId ) );
+        }
+        String key = "p" + productId;
+        int[] postings = cache.get( key );
+        if (postings == null) {
+            postings = decode( getProductPostings( productId ) );
+            cache.put( key, postings );
+        }
+        return postings;
+    }
+
+    /**
+     * Returns the cache of the decoded posting lists, with its hit, miss and eviction counters, or null if
+     * the posting lists are not cached
+     */
+    public PostingCache getPostingCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the integers getReviewsWithToken or getProductReviews return for a posting list
+     */
+    private static int[] decode(PostingIterator postings) {
+        int[] decoded = new int[postings.hasFrequencies() ? 2 * postings.size() : postings.size()];
+        int i = 0;
+        while (postings.nextDoc() != PostingIterator.NO_MORE_DOCS) {
+            decoded[i++] = postings.docId();
+            if (postings.hasFrequencies()) {
+                decoded[i++] = postings.freq();
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Return an iterator over the reviews of a given product identifier, sorted by review id,
+     * which decodes the postings only as it is advanced
+     * <p>
+     * Returns an empty iterator if there are no reviews for this product
+     */
+    public PostingIterator getProductPostings(String productId) {
         int numProducts = dictionaryProduct.getNumOfProducts();
         int index = dictionaryProduct.searchToken( productId );
         if ((index <= numProducts) && index >= 0) {
-            int position = dictionaryProduct.getPostingListPosOfToken( index );
-            int nextPosition = -1;
-            if (index < numProducts - 1) {
-                nextPosition = dictionaryProduct.getPostingListPosOfToken( index + 1 );
-            }
-            int[] reviewIdByProduct = dictionaryProduct.readInfoTokenByPos( dir,
-                    "\\productPosting.bin", position, nextPosition );
-            int prevRev = 0;
-            for (int i = 0; i < reviewIdByProduct.length; i++) {
-                reviewIdByProduct[i] += prevRev;
-                prevRev = reviewIdByProduct[i];
-            }
-            Integer[] enumList = Arrays.stream( reviewIdByProduct ).boxed().toArray( Integer[]::new );
-            Vector<Integer> allReviewsByProduct = new Vector<>( Arrays.asList( enumList ) );
-            return allReviewsByProduct.elements();
-
+            return dictionaryProduct.postingIterator( index );
         }
-        return new Vector<Integer>().elements();
+        return PostingIterator.empty();
     }
 }
\ No newline at end of file
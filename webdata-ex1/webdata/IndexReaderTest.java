@@ -330,4 +330,58 @@ public class IndexReaderTest {
 
     }
 
+    @Test
+    public void BatchMetadataShouldMatchSingleCalls() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+
+        int[] ids = new int[600];
+        Random random = new Random(5);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = random.nextInt(ir.getNumberOfReviews() + 10) - 5;
+        }
+        int[] scores = new int[ids.length];
+        int[] numerators = new int[ids.length];
+        int[] denominators = new int[ids.length];
+        int[] lengths = new int[ids.length];
+        ir.getReviewsMetadata(ids, scores, numerators, denominators, null);
+        ir.getReviewLengths(ids, lengths);
+
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ir.getReviewScore(ids[i]), scores[i]);
+            assertEquals(ir.getReviewHelpfulnessNumerator(ids[i]), numerators[i]);
+            assertEquals(ir.getReviewHelpfulnessDenominator(ids[i]), denominators[i]);
+            assertEquals(ir.getReviewLength(ids[i]), lengths[i]);
+        }
+    }
+
+    @Test
+    public void FuzzyTokensShouldBeWithinTheEdits() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+
+        Map<String, Integer> fuzzy = ir.getFuzzyTokens("Habanero", 2);
+        assertEquals(Arrays.asList("habanero", "habenaro", "habenero"), new ArrayList<>(fuzzy.keySet()));
+        for (Map.Entry<String, Integer> entry : fuzzy.entrySet()) {
+            assertEquals(ir.getTokenFrequency(entry.getKey()), (int) entry.getValue());
+        }
+        assertEquals(Arrays.asList("habanero", "habenero"), new ArrayList<>(ir.getFuzzyTokens("habanero", 1).keySet()));
+        assertEquals(0, ir.getFuzzyTokens("zzzzzzzz", 2).size());
+    }
+
+    @Test
+    public void TokenStatisticsShouldMatchThePostings() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+
+        for (String token : Arrays.asList("the", "Coffee", "habanero", "dog", "nosuchtoken")) {
+            int postings = Collections.list(ir.getReviewsWithToken(token)).size() / 2;
+            TermStatistics statistics = ir.getTokenStatistics(token);
+            assertEquals(token, postings, ir.getTokenFrequency(token));
+            assertEquals(token, postings, statistics.getDocumentFrequency());
+            assertEquals(token, ir.getTokenCollectionFrequency(token), statistics.getCollectionFrequency());
+            assertTrue(token, statistics.getMaxScore() >= 0);
+        }
+    }
+
 }
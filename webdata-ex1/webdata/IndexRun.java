@@ -0,0 +1,179 @@
+package webdata;
+
+import java.io.*;
+
+/***
+ * A sorted partial index (run) that was flushed to disk while building the index in bounded memory.
+ * A run file starts with the number of terms it holds, the number of integers of each posting (2 for a review
+ * id and a frequency, 1 for only a review id) and whether it holds positions, followed by each term (in
+ * lexicographic order), the number of postings of the term and its postings. A run of a table with positions
+ * holds after each posting the positions of the term in the review, as many as its frequency.
+ * An IndexRun object reads the run one posting at a time, so the runs can be merged without loading the
+ * posting list of a term.
+ */
+public class IndexRun implements Comparable<IndexRun> {
+    private DataInputStream runFile;
+    private final int order; // the order in which the run was flushed
+    private int termsLeft;
+    private final boolean withFrequencies;
+    private final boolean withPositions;
+    private String term;
+    private int count;
+    private int postingsLeft; // the postings of the current term not read yet
+    private int reviewId;
+    private int frequency;
+    private int[] positions;
+
+    /***
+     * Opens a run file for reading. The run is positioned before its first term.
+     * @param fileName - The run file
+     * @param order - The order in which the run was flushed
+     */
+    public IndexRun(String fileName, int order) throws IOException {
+        runFile = new DataInputStream( new BufferedInputStream( new FileInputStream( fileName ) ) );
+        this.order = order;
+        termsLeft = runFile.readInt();
+        withFrequencies = runFile.readInt() == 2;
+        withPositions = runFile.readBoolean();
+        positions = new int[16];
+    }
+
+    /***
+     * Writes the terms of the in memory index into a run file.
+     * @param fileName - The run file to create
+     * @param table - The terms and their posting lists
+     */
+    public static void write(String fileName, PostingsTable table) throws IOException {
+        DataOutputStream runFile = new DataOutputStream( new BufferedOutputStream(
+                new FileOutputStream( fileName ) ) );
+        try {
+            writeTerms( runFile, table );
+        } finally {
+            runFile.close();
+        }
+    }
+
+    /***
+     * Writes the header of a run and then each term and its postings, by the order of the terms.
+     */
+    private static void writeTerms(DataOutputStream runFile, PostingsTable table) throws IOException {
+        int numbersPerPosting = table.hasFrequencies() ? 2 : 1;
+        runFile.writeInt( table.size() );
+        runFile.writeInt( numbersPerPosting );
+        runFile.writeBoolean( table.hasPositions() );
+        for (int ordinal : table.sortedOrdinals()) {
+            int[] postings = table.getPostings( ordinal );
+            int size = table.getPostingsSize( ordinal );
+            int[] positions = table.hasPositions() ? table.getPositions( ordinal ) : null;
+            int position = 0; // the index of the first position of the current posting
+            runFile.writeUTF( table.getTerm( ordinal ) );
+            runFile.writeInt( size / numbersPerPosting );
+            for (int i = 0; i < size; i += numbersPerPosting) {
+                runFile.writeInt( postings[i] );
+                if (numbersPerPosting == 2) {
+                    runFile.writeInt( postings[i + 1] );
+                }
+                if (positions != null) {
+                    for (int j = 0; j < postings[i + 1]; j++) {
+                        runFile.writeInt( positions[position++] );
+                    }
+                }
+            }
+        }
+    }
+
+    /***
+     * Moves to the next term of the run, skipping the postings of the current term that were not read.
+     * @return false if there are no more terms in the run
+     */
+    public boolean next() throws IOException {
+        while (postingsLeft > 0) {
+            nextPosting();
+        }
+        if (termsLeft == 0) {
+            return false;
+        }
+        termsLeft--;
+        term = runFile.readUTF();
+        count = runFile.readInt();
+        postingsLeft = count;
+        return true;
+    }
+
+    /***
+     * Reads the next posting of the current term.
+     * @return false if there are no more postings of the current term
+     */
+    public boolean nextPosting() throws IOException {
+        if (postingsLeft == 0) {
+            return false;
+        }
+        postingsLeft--;
+        reviewId = runFile.readInt();
+        frequency = withFrequencies ? runFile.readInt() : 0;
+        if (withPositions) {
+            if (frequency > positions.length) {
+                positions = new int[Math.max( frequency, 2 * positions.length )];
+            }
+            for (int i = 0; i < frequency; i++) {
+                positions[i] = runFile.readInt();
+            }
+        }
+        return true;
+    }
+
+    /***
+     * Closes the run file.
+     */
+    public void close() throws IOException {
+        runFile.close();
+    }
+
+    /***
+     * @return The current term of the run
+     */
+    public String getTerm() {
+        return term;
+    }
+
+    /***
+     * @return The number of postings of the current term
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /***
+     * @return The review id of the current posting
+     */
+    public int getReviewId() {
+        return reviewId;
+    }
+
+    /***
+     * @return The frequency of the current posting, or 0 for a run without frequencies
+     */
+    public int getFrequency() {
+        return frequency;
+    }
+
+    /***
+     * @return The positions of the current posting, for a run with positions. Only the first getFrequency()
+     * integers are valid.
+     */
+    public int[] getPositions() {
+        return positions;
+    }
+
+    /***
+     * Runs are ordered by their current term, and runs with the same term by the order they were flushed.
+     */
+    @Override
+    public int compareTo(IndexRun other) {
+        int compare = term.compareTo( other.term );
+        if (compare != 0) {
+            return compare;
+        }
+        return Integer.compare( order, other.order );
+    }
+}
@@ -0,0 +1,85 @@
+package webdata;
+
+/***
+ * Intersects the posting lists of a rare token and a very frequent token, once by decoding both lists
+ * posting by posting, and once by driving the intersection with the rare token and advancing the frequent
+ * token's list to each of its reviews, which jumps with the skip entries.
+ * Usage: IntersectionBenchmark dir [rareToken] [frequentToken] [iterations]
+ */
+public class IntersectionBenchmark {
+
+    public static void main(String[] args) {
+        IndexReader reader = new IndexReader( args[0] );
+        String rare = args.length > 1 ? args[1] : "habanero";
+        String frequent = args.length > 2 ? args[2] : "the";
+        int iterations = args.length > 3 ? Integer.parseInt( args[3] ) : 2000;
+        System.out.printf( "format version %d, %s: %d reviews, %s: %d reviews%n", reader.getFormatVersion(),
+                rare, reader.getTokenFrequency( rare ), frequent, reader.getTokenFrequency( frequent ) );
+
+        for (int round = 0; round < 2; round++) { // the first round is a warm up
+            long start = System.nanoTime();
+            int linear = 0;
+            for (int i = 0; i < iterations; i++) {
+                linear = intersectLinear( reader.getTokenPostings( rare ), reader.getTokenPostings( frequent ) );
+            }
+            long linearTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int skipping = 0;
+            for (int i = 0; i < iterations; i++) {
+                skipping = intersectAdvance( reader.getTokenPostings( rare ), reader.getTokenPostings( frequent ) );
+            }
+            long skippingTime = System.nanoTime() - start;
+
+            if (round == 1) {
+                if (linear != skipping) {
+                    throw new IllegalStateException( "The intersections are different" );
+                }
+                System.out.printf( "common reviews: %d%n", linear );
+                System.out.printf( "nextDoc only: %.1f us/intersection%n", linearTime / 1000.0 / iterations );
+                System.out.printf( "advance:      %.1f us/intersection (%.1fx faster)%n",
+                        skippingTime / 1000.0 / iterations, (double) linearTime / skippingTime );
+            }
+        }
+    }
+
+    /***
+     * Intersects two posting lists by moving the list that is behind to its next posting.
+     * @return The number of common reviews
+     */
+    private static int intersectLinear(PostingIterator first, PostingIterator second) {
+        int common = 0;
+        int a = first.nextDoc();
+        int b = second.nextDoc();
+        while (a != PostingIterator.NO_MORE_DOCS && b != PostingIterator.NO_MORE_DOCS) {
+            if (a == b) {
+                common++;
+                a = first.nextDoc();
+                b = second.nextDoc();
+            } else if (a < b) {
+                a = first.nextDoc();
+            } else {
+                b = second.nextDoc();
+            }
+        }
+        return common;
+    }
+
+    /***
+     * Intersects two posting lists by advancing the frequent list to each review of the rare list.
+     * @return The number of common reviews
+     */
+    private static int intersectAdvance(PostingIterator rare, PostingIterator frequent) {
+        int common = 0;
+        for (int doc = rare.nextDoc(); doc != PostingIterator.NO_MORE_DOCS; doc = rare.nextDoc()) {
+            int other = frequent.advance( doc );
+            if (other == PostingIterator.NO_MORE_DOCS) {
+                break;
+            }
+            if (other == doc) {
+                common++;
+            }
+        }
+        return common;
+    }
+}
@@ -0,0 +1,72 @@
+package webdata;
+
+/***
+ * An automaton that accepts the strings within a number of edits (insertions, deletions and substitutions
+ * of a char) of a term, run one char at a time over the sorted terms of a dictionary.
+ * The state after some chars is the row of the edit distances between them and every prefix of the term,
+ * and the states after each char of the current string are kept, so a string that shares a prefix with the
+ * previous one is continued from the state after that prefix. A state whose distances are all larger than
+ * the number of edits can not lead to a match, so every string that starts with its chars can be skipped.
+ */
+public class LevenshteinAutomaton {
+    private final char[] term;
+    private final int maxEdits;
+    private int[][] states; // the state after each number of chars of the current string
+
+    /***
+     * @param term - The term to match
+     * @param maxEdits - The largest number of edits of a match
+     */
+    public LevenshteinAutomaton(String term, int maxEdits) {
+        this.term = term.toCharArray();
+        this.maxEdits = maxEdits;
+        states = new int[32][];
+        states[0] = new int[this.term.length + 1];
+        for (int j = 0; j <= this.term.length; j++) {
+            states[0][j] = j;
+        }
+    }
+
+    /***
+     * Moves from the state after depth chars of the current string by its next char.
+     * @param depth - The number of chars of the current string before the char
+     * @param c - The char
+     * @return Whether a string that starts with the depth + 1 chars can still match the term
+     */
+    public boolean step(int depth, char c) {
+        if (depth + 1 == states.length) {
+            int[][] bigger = new int[2 * states.length][];
+            System.arraycopy( states, 0, bigger, 0, states.length );
+            states = bigger;
+        }
+        if (states[depth + 1] == null) {
+            states[depth + 1] = new int[term.length + 1];
+        }
+        int[] previous = states[depth];
+        int[] next = states[depth + 1];
+        next[0] = depth + 1;
+        int min = next[0];
+        for (int j = 1; j <= term.length; j++) {
+            int substitution = previous[j - 1] + (term[j - 1] == c ? 0 : 1);
+            next[j] = Math.min( substitution, Math.min( previous[j], next[j - 1] ) + 1 );
+            min = Math.min( min, next[j] );
+        }
+        return min <= maxEdits;
+    }
+
+    /***
+     * @param depth - The number of chars of the current string
+     * @return The edit distance of the depth chars from the term, if they were stepped through
+     */
+    public int distance(int depth) {
+        return states[depth][term.length];
+    }
+
+    /***
+     * @param depth - The number of chars of the current string
+     * @return Whether the depth chars are within the number of edits of the term
+     */
+    public boolean isMatch(int depth) {
+        return distance( depth ) <= maxEdits;
+    }
+}
@@ -0,0 +1,73 @@
+package webdata;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/***
+ * Evicts the least recently used posting lists first.
+ */
+public class LruPolicy implements EvictionPolicy {
+    private final long maxBytes;
+    private final LinkedHashMap<String, int[]> entries;
+    private long bytes;
+
+    /***
+     * @param maxBytes - The memory the cached entries may take
+     */
+    public LruPolicy(long maxBytes) {
+        this.maxBytes = maxBytes;
+        entries = new LinkedHashMap<>( 16, 0.75f, true ); // access order, the least recently used first
+    }
+
+    @Override
+    public int[] get(String key) {
+        return entries.get( key );
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return entries.containsKey( key );
+    }
+
+    @Override
+    public int put(String key, int[] postings, long bytes) {
+        if (bytes > maxBytes) {
+            return 1;
+        }
+        entries.put( key, postings );
+        this.bytes += bytes;
+        int evicted = 0;
+        Iterator<Map.Entry<String, int[]>> eldest = entries.entrySet().iterator();
+        while (this.bytes > maxBytes) {
+            Map.Entry<String, int[]> entry = eldest.next();
+            this.bytes -= PostingCache.entryBytes( entry.getKey(), entry.getValue() );
+            eldest.remove();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    @Override
+    public long evict() {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        Iterator<Map.Entry<String, int[]>> eldest = entries.entrySet().iterator();
+        Map.Entry<String, int[]> entry = eldest.next();
+        long evicted = PostingCache.entryBytes( entry.getKey(), entry.getValue() );
+        eldest.remove();
+        bytes -= evicted;
+        return evicted;
+    }
+
+    @Override
+    public long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public int entries() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,69 @@
+package webdata;
+
+import java.util.Random;
+
+/***
+ * Compares reading the metadata of many random reviews one review at a time through IndexReader with
+ * reading it through the batch method, which visits the reviews by increasing id.
+ * Usage: MetadataBenchmark dir [batchSize] [iterations]
+ */
+public class MetadataBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        IndexReader reader = new IndexReader( args[0] );
+        int batchSize = args.length > 1 ? Integer.parseInt( args[1] ) : 500;
+        int iterations = args.length > 2 ? Integer.parseInt( args[2] ) : 2000;
+        Random random = new Random( 1 );
+        int[][] batches = new int[iterations][batchSize];
+        for (int[] batch : batches) {
+            for (int i = 0; i < batchSize; i++) {
+                batch[i] = 1 + random.nextInt( reader.getNumberOfReviews() );
+            }
+        }
+        int[] scores = new int[batchSize];
+        int[] numerators = new int[batchSize];
+        int[] denominators = new int[batchSize];
+        int[] lengths = new int[batchSize];
+
+        for (int round = 0; round < ROUNDS; round++) { // the last round is reported
+            long start = System.nanoTime();
+            long loopSum = 0;
+            for (int[] batch : batches) {
+                for (int i = 0; i < batchSize; i++) {
+                    scores[i] = reader.getReviewScore( batch[i] );
+                    numerators[i] = reader.getReviewHelpfulnessNumerator( batch[i] );
+                    denominators[i] = reader.getReviewHelpfulnessDenominator( batch[i] );
+                    lengths[i] = reader.getReviewLength( batch[i] );
+                }
+                loopSum += checksum( scores, numerators, denominators, lengths );
+            }
+            long loopTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long batchSum = 0;
+            for (int[] batch : batches) {
+                reader.getReviewsMetadata( batch, scores, numerators, denominators, lengths );
+                batchSum += checksum( scores, numerators, denominators, lengths );
+            }
+            long batchTime = System.nanoTime() - start;
+
+            if (loopSum != batchSum) {
+                throw new IllegalStateException( "The batch metadata is different" );
+            }
+            if (round == ROUNDS - 1) {
+                System.out.printf( "%d reviews per batch%n", batchSize );
+                System.out.printf( "per id loop: %.2f us/batch%n", loopTime / 1000.0 / iterations );
+                System.out.printf( "batch:       %.2f us/batch%n", batchTime / 1000.0 / iterations );
+            }
+        }
+    }
+
+    private static long checksum(int[] scores, int[] numerators, int[] denominators, int[] lengths) {
+        long sum = 0;
+        for (int i = 0; i < scores.length; i++) {
+            sum = 31 * sum + scores[i] + 7L * numerators[i] + 13L * denominators[i] + 17L * lengths[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,252 @@
+package webdata;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/***
+ * A minimal perfect hash of the terms of a dictionary, which maps each term to its index (ordinal) in the
+ * dictionary in constant time, by the hash and displace method.
+ * The terms are hashed into buckets of about two terms. The buckets are placed from the largest: each
+ * bucket gets the first seed that hashes all its terms to free slots of a table with one slot per term,
+ * and buckets of a single term take the next free slot directly. The table holds the ordinal of the term
+ * of each slot.
+ * A term that is not in the dictionary is mapped to the ordinal of some other term, so a lookup must be
+ * verified against the stored term.
+ * The file holds the number of terms and of buckets, the seed of each bucket (a negative seed -s-1 is
+ * the slot s of a single term bucket, and 0 an empty bucket) and the ordinal of each slot, all as ints.
+ */
+public class MinimalPerfectHash {
+    private static final int MAX_SEED = 1 << 24;
+    private final IntBuffer file;
+    private final int terms;
+    private final int buckets;
+
+    private MinimalPerfectHash(IntBuffer file) {
+        this.file = file;
+        terms = file.get( 0 );
+        buckets = file.get( 1 );
+    }
+
+    /***
+     * Maps the hash of a dictionary written by write.
+     * @param fileName - The hash file
+     * @return The hash of the dictionary
+     */
+    public static MinimalPerfectHash read(String fileName) throws IOException {
+        return new MinimalPerfectHash( Dictionary.mapFile( fileName ).asIntBuffer() );
+    }
+
+    /***
+     * @param term - A term
+     * @return The ordinal of the term if it is in the dictionary, otherwise the ordinal of another term or -1
+     */
+    public int lookup(String term) {
+        return lookup( term.toCharArray(), term.length() );
+    }
+
+    /***
+     * @param term - The characters of a term
+     * @param length - The length of the term
+     * @return The ordinal of the term if it is in the dictionary, otherwise the ordinal of another term or -1
+     */
+    public int lookup(char[] term, int length) {
+        if (terms == 0) {
+            return -1;
+        }
+        int seed = file.get( 2 + reduce( hash( term, length, 0 ), buckets ) );
+        if (seed == 0) {
+            return -1;
+        }
+        int slot = seed < 0 ? -seed - 1 : reduce( hash( term, length, seed ), terms );
+        return file.get( 2 + buckets + slot );
+    }
+
+    /***
+     * Builds the hash of the terms of a dictionary and writes it into a file.
+     * @param fileName - The hash file to create
+     * @param terms - The distinct terms of the dictionary, by their ordinal
+     */
+    public static void write(String fileName, List<String> terms) throws IOException {
+        write( fileName, terms.iterator() );
+    }
+
+    /***
+     * Builds the hash of the terms of a dictionary, read one at a time, and writes it into a file. The terms
+     * are copied into a temporary file next to the hash file, which is mapped to place the buckets, so only a
+     * few ints per term are kept in memory.
+     * @param fileName - The hash file to create
+     * @param terms - The distinct terms of the dictionary, by their ordinal
+     */
+    public static void write(String fileName, Iterator<String> terms) throws IOException {
+        File charsFile = new File( fileName + ".tmp" );
+        try {
+            writeHash( fileName, terms, charsFile );
+        } finally {
+            charsFile.delete();
+        }
+    }
+
+    private static void writeHash(String fileName, Iterator<String> terms, File charsFile) throws IOException {
+        // ends[i + 1] is where the characters of term i end in the temporary file
+        int[] ends = new int[1024];
+        int n = 0;
+        int maxLength = 0;
+        DataOutputStream charsW = new DataOutputStream( new BufferedOutputStream(
+                new FileOutputStream( charsFile ) ) );
+        try {
+            while (terms.hasNext()) {
+                String term = terms.next();
+                charsW.writeChars( term );
+                if (n + 1 == ends.length) {
+                    ends = Arrays.copyOf( ends, 2 * ends.length );
+                }
+                ends[n + 1] = ends[n] + term.length();
+                maxLength = Math.max( maxLength, term.length() );
+                n++;
+            }
+        } finally {
+            charsW.close();
+        }
+        CharBuffer chars = Dictionary.mapFile( charsFile.getPath() ).asCharBuffer();
+        char[] term = new char[maxLength];
+        int buckets = n / 2 + 1;
+        int[] seeds = new int[buckets];
+        int[] ordinals = new int[n];
+        // group the terms by bucket, and order the buckets by decreasing size
+        int[] bucketOf = new int[n];
+        int[] bucketSizes = new int[buckets];
+        int maxSize = 0;
+        for (int i = 0; i < n; i++) {
+            int length = load( chars, ends, i, term, 0 );
+            bucketOf[i] = reduce( hash( term, length, 0 ), buckets );
+            maxSize = Math.max( maxSize, ++bucketSizes[bucketOf[i]] );
+        }
+        int[] bucketStarts = new int[buckets + 1];
+        for (int b = 0; b < buckets; b++) {
+            bucketStarts[b + 1] = bucketStarts[b] + bucketSizes[b];
+        }
+        int[] bucketTerms = new int[n];
+        int[] filled = new int[buckets];
+        for (int i = 0; i < n; i++) {
+            bucketTerms[bucketStarts[bucketOf[i]] + filled[bucketOf[i]]++] = i;
+        }
+        bucketOf = null;
+        filled = null;
+        int[] sizeStarts = new int[maxSize + 2];
+        for (int b = 0; b < buckets; b++) {
+            sizeStarts[maxSize - bucketSizes[b] + 1]++;
+        }
+        for (int s = 1; s < sizeStarts.length; s++) {
+            sizeStarts[s] += sizeStarts[s - 1];
+        }
+        int[] order = new int[buckets];
+        for (int b = 0; b < buckets; b++) {
+            order[sizeStarts[maxSize - bucketSizes[b]]++] = b;
+        }
+
+        boolean[] taken = new boolean[n];
+        int[] slots = new int[Math.max( 1, maxSize )];
+        char[] bucketChars = new char[maxSize * maxLength];
+        int[] bucketEnds = new int[maxSize + 1];
+        int nextFree = 0;
+        for (int b : order) {
+            int size = bucketSizes[b];
+            int start = bucketStarts[b];
+            if (size == 0) {
+                break;
+            }
+            if (size == 1) {
+                while (taken[nextFree]) {
+                    nextFree++;
+                }
+                taken[nextFree] = true;
+                ordinals[nextFree] = bucketTerms[start];
+                seeds[b] = -nextFree - 1;
+                continue;
+            }
+            // the characters of the terms of the bucket, one after the other
+            for (int i = 0; i < size; i++) {
+                bucketEnds[i + 1] = bucketEnds[i] + load( chars, ends, bucketTerms[start + i], bucketChars,
+                        bucketEnds[i] );
+            }
+            for (int seed = 1; ; seed++) {
+                if (seed == MAX_SEED) {
+                    throw new IllegalStateException( "No seed places the bucket, are the terms distinct?" );
+                }
+                int placed = 0;
+                while (placed < size) {
+                    int length = bucketEnds[placed + 1] - bucketEnds[placed];
+                    System.arraycopy( bucketChars, bucketEnds[placed], term, 0, length );
+                    int slot = reduce( hash( term, length, seed ), n );
+                    if (taken[slot]) {
+                        break;
+                    }
+                    taken[slot] = true;
+                    slots[placed++] = slot;
+                }
+                if (placed == size) {
+                    seeds[b] = seed;
+                    for (int i = 0; i < size; i++) {
+                        ordinals[slots[i]] = bucketTerms[start + i];
+                    }
+                    break;
+                }
+                for (int i = 0; i < placed; i++) {
+                    taken[slots[i]] = false;
+                }
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( fileName ) ) );
+        out.writeInt( n );
+        out.writeInt( buckets );
+        for (int seed : seeds) {
+            out.writeInt( seed );
+        }
+        for (int ordinal : ordinals) {
+            out.writeInt( ordinal );
+        }
+        out.close();
+    }
+
+    /***
+     * Copies the characters of a term from the temporary file of the terms.
+     * @return The length of the term
+     */
+    private static int load(CharBuffer chars, int[] ends, int ordinal, char[] into, int offset) {
+        int length = ends[ordinal + 1] - ends[ordinal];
+        for (int i = 0; i < length; i++) {
+            into[offset + i] = chars.get( ends[ordinal] + i );
+        }
+        return length;
+    }
+
+    /***
+     * @param term - The characters of a term
+     * @param length - The length of the term
+     * @param seed - The seed of the hash function
+     * @return A 32 bit hash of the term (FNV-1a with a murmur finalizer)
+     */
+    static int hash(char[] term, int length, int seed) {
+        int h = 0x811C9DC5 ^ (seed * 0x9E3779B9);
+        for (int i = 0; i < length; i++) {
+            h = (h ^ term[i]) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    /***
+     * @return The hash mapped to a number between 0 and range - 1
+     */
+    private static int reduce(int hash, int range) {
+        return (int) (((hash & 0xFFFFFFFFL) * range) >>> 32);
+    }
+}
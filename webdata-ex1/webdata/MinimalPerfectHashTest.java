@@ -0,0 +1,49 @@
+package webdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import org.junit.Test;
+
+
+public class MinimalPerfectHashTest {
+
+    @Test
+    public void EveryTermShouldMapToItsOrdinal() throws IOException
+    {
+        Random random = new Random(11);
+        TreeSet<String> sorted = new TreeSet<>();
+        while (sorted.size() < 50000) {
+            sorted.add(Long.toString(random.nextLong() >>> random.nextInt(60), 36));
+        }
+        List<String> terms = new ArrayList<>(sorted);
+        File file = File.createTempFile("terms", "Hash.bin");
+        file.deleteOnExit();
+        MinimalPerfectHash.write(file.getPath(), terms);
+        MinimalPerfectHash hash = MinimalPerfectHash.read(file.getPath());
+
+        for (int i = 0; i < terms.size(); i++) {
+            assertEquals(terms.get(i), i, hash.lookup(terms.get(i)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            int candidate = hash.lookup("missing" + i);
+            assertTrue(candidate >= -1 && candidate < terms.size());
+        }
+        assertEquals(2 + terms.size() / 2 + 1 + terms.size(), file.length() / 4);
+    }
+
+    @Test
+    public void EmptyDictionaryShouldFindNothing() throws IOException
+    {
+        File file = File.createTempFile("empty", "Hash.bin");
+        file.deleteOnExit();
+        MinimalPerfectHash.write(file.getPath(), new ArrayList<>());
+
+        assertEquals(-1, MinimalPerfectHash.read(file.getPath()).lookup("anything"));
+    }
+
+}
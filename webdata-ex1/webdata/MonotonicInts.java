@@ -0,0 +1,100 @@
+package webdata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/***
+ * An in memory array of numbers that grow slowly with their index, such as the positions of the posting
+ * lists, stored as blocks of BLOCK_SIZE numbers: the smallest number of each block, and the difference of
+ * each number from it, packed with as many bits as the largest difference of the block needs.
+ * Any number is read directly by its index, and reading does not change any state, so the array can be
+ * shared by threads.
+ */
+public class MonotonicInts {
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private final int size;
+    private final int[] mins; // the smallest number of each block
+    private final long[] starts; // the bit position of the differences of each block
+    private final byte[] bits; // the number of bits of each difference of each block
+    private final ByteBuffer differences;
+
+    /***
+     * @param values - The numbers to store
+     * @param size - The number of numbers to store, from the first one
+     */
+    public MonotonicInts(int[] values, int size) {
+        this.size = size;
+        int blocks = (size + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+        mins = new int[blocks];
+        starts = new long[blocks];
+        bits = new byte[blocks];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BitOutputStream out = new BitOutputStream( bytes );
+        try {
+            for (int block = 0; block < blocks; block++) {
+                int from = block << BLOCK_SHIFT;
+                int to = Math.min( size, from + BLOCK_SIZE );
+                int min = values[from];
+                long max = values[from];
+                for (int i = from + 1; i < to; i++) {
+                    min = Math.min( min, values[i] );
+                    max = Math.max( max, values[i] );
+                }
+                mins[block] = min;
+                starts[block] = out.position();
+                bits[block] = (byte) PackedInts.bitsRequired( max - min );
+                for (int i = from; i < to; i++) {
+                    out.writeBits( (long) values[i] - min, bits[block] );
+                }
+            }
+            out.writeBits( 0, 64 ); // so the last differences can be read as a whole long
+            out.close();
+        } catch (IOException e) {
+            throw new IllegalStateException( e ); // not thrown by an in memory stream
+        }
+        differences = ByteBuffer.wrap( bytes.toByteArray() );
+    }
+
+    /***
+     * Reads numbers written as ints one after the other, in bulk.
+     * @param in - The ints to read from, at the first number
+     * @param size - The number of numbers to read
+     * @return The numbers
+     */
+    public static MonotonicInts read(IntBuffer in, int size) {
+        int[] values = new int[size];
+        in.get( values );
+        return new MonotonicInts( values, size );
+    }
+
+    /***
+     * @param index - The index of a number
+     * @return The number
+     */
+    public int get(int index) {
+        int block = index >>> BLOCK_SHIFT;
+        int blockBits = bits[block];
+        if (blockBits == 0) {
+            return mins[block];
+        }
+        long position = starts[block] + (long) (index & (BLOCK_SIZE - 1)) * blockBits;
+        return mins[block] + PackedInts.read( differences, position, blockBits );
+    }
+
+    /***
+     * @return The number of numbers
+     */
+    public int size() {
+        return size;
+    }
+
+    /***
+     * @return The approximate memory the array takes
+     */
+    public long ramBytes() {
+        return 64 + 13L * mins.length + differences.capacity();
+    }
+}
@@ -0,0 +1,108 @@
+package webdata;
+
+import java.io.IOException;
+
+/***
+ * Writes the gaps of a block and then its frequencies as patched frames of reference (PForDelta): each
+ * number less one is packed in the same number of bits, chosen so the frame is the smallest, and the numbers
+ * that need more bits are exceptions, whose higher bits are patched in after the frame.
+ * A frame is a byte of the number of bits, a byte of the number of exceptions, the packed low bits of the
+ * numbers padded to a whole byte, and for each exception its index as a byte and its higher bits as a
+ * variable byte code. The gaps of a block are mostly small and its frequencies mostly one, so most frames
+ * take a few bits per number and are decoded without a test per number.
+ */
+public class PForDeltaCodec implements PostingCodec {
+    private static final int EXCEPTION_HEADER = 8; // the bits of the index of an exception
+
+    @Override
+    public int id() {
+        return PFOR_DELTA;
+    }
+
+    @Override
+    public String name() {
+        return "pfordelta";
+    }
+
+    @Override
+    public boolean isByteAligned() {
+        return true;
+    }
+
+    @Override
+    public void writeBlock(BitOutputStream out, int[] gaps, int[] freqs, int count) throws IOException {
+        write( out, gaps, count );
+        if (freqs != null) {
+            write( out, freqs, count );
+        }
+    }
+
+    private static void write(BitOutputStream out, int[] numbers, int count) throws IOException {
+        int bits = bestBits( numbers, count );
+        int exceptions = 0;
+        for (int i = 0; i < count; i++) {
+            if (((numbers[i] - 1) >>> bits) != 0) {
+                exceptions++;
+            }
+        }
+        out.writeBits( bits, 8 );
+        out.writeBits( exceptions, 8 );
+        for (int i = 0; i < count; i++) {
+            out.writeBits( numbers[i] - 1, bits );
+        }
+        out.align();
+        for (int i = 0; i < count; i++) {
+            int high = (numbers[i] - 1) >>> bits;
+            if (high != 0) {
+                out.writeBits( i, EXCEPTION_HEADER );
+                VByteCodec.write( out, high );
+            }
+        }
+    }
+
+    /***
+     * @return The number of bits of the frame of the given numbers that makes it the smallest
+     */
+    private static int bestBits(int[] numbers, int count) {
+        int best = 0;
+        long bestSize = Long.MAX_VALUE;
+        for (int bits = 0; bits < 32; bits++) {
+            long size = (long) count * bits;
+            for (int i = 0; i < count && size < bestSize; i++) {
+                int high = (numbers[i] - 1) >>> bits;
+                if (high != 0) {
+                    size += EXCEPTION_HEADER + 8L * ((32 - Integer.numberOfLeadingZeros( high ) + 6) / 7);
+                }
+            }
+            if (size < bestSize) {
+                best = bits;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void readBlock(BitInputStream in, int[] gaps, int[] freqs, int count) {
+        read( in, gaps, count );
+        if (freqs != null) {
+            read( in, freqs, count );
+        }
+    }
+
+    private static void read(BitInputStream in, int[] numbers, int count) {
+        int bits = in.readByte();
+        int exceptions = in.readByte();
+        for (int i = 0; i < count; i++) {
+            numbers[i] = (int) in.readBits( bits );
+        }
+        in.seek( (in.position() + 7) & ~7L );
+        for (int e = 0; e < exceptions; e++) {
+            int index = in.readByte();
+            numbers[index] |= VByteCodec.read( in ) << bits;
+        }
+        for (int i = 0; i < count; i++) {
+            numbers[i]++;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package webdata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/***
+ * An array of non negative numbers that all use the same number of bits, packed back to back in a mapped
+ * file. Any number is read directly by its index, without decoding the numbers before it, and reading does
+ * not change any state, so a packed array can be shared by threads.
+ */
+public class PackedInts {
+    private final ByteBuffer buffer;
+    private final long start; // the bit position of the first number
+    private final int bits; // the number of bits of each number
+
+    /***
+     * @param buffer - The buffer that holds the numbers
+     * @param start - The bit position of the first number in the buffer
+     * @param bits - The number of bits of each number, between 0 and 32
+     */
+    public PackedInts(ByteBuffer buffer, long start, int bits) {
+        this.buffer = buffer;
+        this.start = start;
+        this.bits = bits;
+    }
+
+    /***
+     * @param maxValue - The largest number to store
+     * @return The number of bits that can hold all the numbers up to the given one
+     */
+    public static int bitsRequired(long maxValue) {
+        return 64 - Long.numberOfLeadingZeros( maxValue );
+    }
+
+    /***
+     * Writes numbers with the given number of bits each, starting where the stream is.
+     * @param out - The stream to write into
+     * @param values - The numbers to write
+     * @param from - The index of the first number to write
+     * @param to - The index after the last number to write
+     * @param bits - The number of bits of each number
+     */
+    public static void write(BitOutputStream out, int[] values, int from, int to, int bits) throws IOException {
+        for (int i = from; i < to; i++) {
+            out.writeBits( values[i], bits );
+        }
+    }
+
+    /***
+     * @param index - The index of a number
+     * @return The number
+     */
+    public int get(int index) {
+        if (bits == 0) {
+            return 0;
+        }
+        return read( buffer, start + (long) index * bits, bits );
+    }
+
+    /***
+     * Reads a number of up to 32 bits at any bit position of a buffer.
+     * @param buffer - The buffer that holds the number
+     * @param position - The bit position of the number
+     * @param bits - The number of bits of the number, between 1 and 32
+     * @return The number
+     */
+    static int read(ByteBuffer buffer, long position, int bits) {
+        int first = (int) (position >>> 3);
+        int shift = (int) (position & 7);
+        // a number of up to 32 bits fits in the 8 bytes from the byte it starts in
+        long word;
+        if (first + 8 <= buffer.limit()) {
+            word = buffer.getLong( first );
+        } else {
+            word = 0;
+            for (int i = 0; i < 8; i++) {
+                word = (word << 8) | (first + i < buffer.limit() ? buffer.get( first + i ) & 0xFF : 0);
+            }
+        }
+        return (int) ((word >>> (64 - shift - bits)) & ((1L << bits) - 1));
+    }
+
+    /***
+     * @return The number of bits of each number
+     */
+    public int getBits() {
+        return bits;
+    }
+}
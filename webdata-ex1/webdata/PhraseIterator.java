@@ -0,0 +1,170 @@
+package webdata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Iterates over the reviews that contain a phrase, or tokens that are all within a given distance of each
+ * other. The reviews that contain all the tokens are found first by intersecting their posting lists, and
+ * only the positions of these reviews are read, to check the phrase or the distance.
+ */
+public class PhraseIterator implements DocIterator {
+    private final PostingIterator[] terms; // by their order in the phrase
+    private final ConjunctionIterator conjunction;
+    private final int distance; // the maximal distance between the tokens, or -1 for a phrase
+    private final int[] pointers; // the current position of each token while matching a review
+    private int doc;
+
+    /***
+     * @param terms - The posting lists of the tokens, with positions
+     * @param distance - The maximal distance between the tokens, or -1 for the exact phrase
+     */
+    private PhraseIterator(PostingIterator[] terms, int distance) {
+        this.terms = terms;
+        this.distance = distance;
+        conjunction = new ConjunctionIterator( terms );
+        pointers = new int[terms.length];
+        doc = -1;
+    }
+
+    /***
+     * Creates an iterator over the reviews that contain the tokens of a text one after another.
+     * @param reader - The reader of an index with positions
+     * @param phrase - The text, split into tokens the way review texts are
+     * @return An iterator over the ids of the matching reviews, in increasing order
+     * @throws IllegalStateException if the index has no positions
+     */
+    public static DocIterator phrase(IndexReader reader, String phrase) {
+        return create( reader, phrase, -1 );
+    }
+
+    /***
+     * Creates an iterator over the reviews that contain all the distinct tokens of a text, in any order, such
+     * that the positions of the tokens are at most the given distance apart (1 for adjacent tokens).
+     * @param reader - The reader of an index with positions
+     * @param text - The text, split into tokens the way review texts are
+     * @param distance - The maximal distance between the first and the last of the tokens
+     * @return An iterator over the ids of the matching reviews, in increasing order
+     * @throws IllegalStateException if the index has no positions
+     */
+    public static DocIterator near(IndexReader reader, String text, int distance) {
+        return create( reader, text, Math.max( 0, distance ) );
+    }
+
+    private static DocIterator create(IndexReader reader, String text, int distance) {
+        if (!reader.hasPositions()) {
+            throw new IllegalStateException( "The index has no positions" );
+        }
+        List<String> tokens = new ArrayList<>();
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.reset( text );
+        while (tokenizer.next()) {
+            // a repeated token is a new occurrence in a phrase, but the same occurrence is near itself
+            if (distance == -1 || !tokens.contains( tokenizer.token() )) {
+                tokens.add( tokenizer.token() );
+            }
+        }
+        if (tokens.isEmpty()) {
+            return PostingIterator.empty();
+        }
+        PostingIterator[] terms = new PostingIterator[tokens.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = reader.getTokenPostings( tokens.get( i ) );
+        }
+        if (terms.length == 1) {
+            return terms[0];
+        }
+        return new PhraseIterator( terms, distance );
+    }
+
+    @Override
+    public int nextDoc() {
+        return doNext( conjunction.nextDoc() );
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        return doNext( conjunction.advance( target ) );
+    }
+
+    /***
+     * @param target - A review that contains all the tokens
+     * @return The first review from the given one on that matches, or NO_MORE_DOCS if there is none
+     */
+    private int doNext(int target) {
+        while (target != NO_MORE_DOCS && !(distance == -1 ? matchesPhrase() : matchesDistance())) {
+            target = conjunction.nextDoc();
+        }
+        doc = target;
+        return doc;
+    }
+
+    /***
+     * @return Whether the tokens follow each other somewhere in the current review
+     */
+    private boolean matchesPhrase() {
+        int[] first = terms[0].positions();
+        for (int i = 1; i < terms.length; i++) {
+            pointers[i] = 0;
+        }
+        for (int start = 0; start < terms[0].freq(); start++) {
+            boolean matches = true;
+            for (int i = 1; i < terms.length && matches; i++) {
+                int[] positions = terms[i].positions();
+                int target = first[start] + i;
+                while (pointers[i] < terms[i].freq() && positions[pointers[i]] < target) {
+                    pointers[i]++;
+                }
+                if (pointers[i] == terms[i].freq()) {
+                    return false; // the token is not after any of the next starts either
+                }
+                matches = positions[pointers[i]] == target;
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /***
+     * @return Whether the tokens are all within the distance somewhere in the current review, found by moving
+     * the token with the smallest position of a window that holds an occurrence of each token
+     */
+    private boolean matchesDistance() {
+        for (int i = 0; i < terms.length; i++) {
+            pointers[i] = 0;
+            terms[i].positions();
+        }
+        while (true) {
+            int min = 0;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < terms.length; i++) {
+                int position = terms[i].positions()[pointers[i]];
+                if (position < terms[min].positions()[pointers[min]]) {
+                    min = i;
+                }
+                max = Math.max( max, position );
+            }
+            if (max - terms[min].positions()[pointers[min]] <= distance) {
+                return true;
+            }
+            if (++pointers[min] == terms[min].freq()) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int cost() {
+        return conjunction.cost();
+    }
+}
@@ -0,0 +1,88 @@
+package webdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import org.junit.Test;
+
+
+public class PhraseQueryTest {
+
+    private static final String[] TEXTS = {
+        "I bought this dog food for my dog.",
+        "The food is good, my dog likes it.",
+        "Food for a dog? No, this is cat food.",
+        "dog dog food food"
+    };
+
+    private IndexReader buildIndex(boolean positional) throws IOException
+    {
+        File dir = Files.createTempDirectory("phrases").toFile();
+        File input = new File(dir, "reviews.txt");
+        FileWriter writer = new FileWriter(input);
+        for (int i = 0; i < TEXTS.length; i++) {
+            writer.write("product/productId: B00000000" + i + "\n");
+            writer.write("review/helpfulness: 1/1\n");
+            writer.write("review/score: 5.0\n");
+            writer.write("review/text: " + TEXTS[i] + "\n\n");
+        }
+        writer.close();
+        SlowIndexWriter indexWriter = new SlowIndexWriter();
+        indexWriter.setPositional(positional);
+        indexWriter.slowWrite(input.getPath(), dir.getPath() + File.separator + "index");
+        return new IndexReader(dir.getPath() + File.separator + "index");
+    }
+
+    private List<Integer> collect(DocIterator iterator)
+    {
+        List<Integer> ids = new ArrayList<>();
+        for (int doc = iterator.nextDoc(); doc != DocIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+            ids.add(doc);
+        }
+        return ids;
+    }
+
+    @Test
+    public void PhraseShouldMatchAdjacentTokens() throws IOException
+    {
+        IndexReader ir = buildIndex(true);
+
+        assertTrue(ir.hasPositions());
+        assertEquals(Arrays.asList(1, 4), collect(ir.getReviewsWithPhrase("dog food")));
+        assertEquals(Arrays.asList(2), collect(ir.getReviewsWithPhrase("Food is good")));
+        assertEquals(Arrays.asList(3), collect(ir.getReviewsWithPhrase("cat food")));
+        assertEquals(Arrays.asList(4), collect(ir.getReviewsWithPhrase("dog dog")));
+    }
+
+    @Test
+    public void DistanceShouldMatchTokensInAnyOrder() throws IOException
+    {
+        IndexReader ir = buildIndex(true);
+
+        assertEquals(Arrays.asList(1, 4), collect(ir.getReviewsWithinDistance("food dog", 1)));
+        assertEquals(Arrays.asList(1, 2, 3, 4), collect(ir.getReviewsWithinDistance("food dog", 4)));
+        assertEquals(Arrays.asList(1, 4), collect(ir.getReviewsMatching("\"dog food\" AND NOT cat")));
+        assertEquals(Arrays.asList(2), collect(ir.getReviewsMatching("\"dog likes\"~1 OR \"likes food\"~2")));
+    }
+
+    @Test
+    public void PhraseShouldNeedPositions() throws IOException
+    {
+        IndexReader ir = buildIndex(false);
+
+        assertFalse(ir.hasPositions());
+        try {
+            ir.getReviewsWithPhrase("dog food");
+            assertTrue("a phrase query should need positions", false);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
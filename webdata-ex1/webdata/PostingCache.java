@@ -0,0 +1,200 @@
+package webdata;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/***
+ * A cache of decoded posting lists, bounded by the memory the lists take rather than by their number.
+ * The cache is split into segments by the hash of the key, each with its own lock, eviction policy and
+ * share of the budget, so concurrent readers only contend when they look up keys of the same segment.
+ * A list bigger than the share of a segment goes to an overflow segment, with its own lock and a policy over
+ * the whole budget, whose lists are evicted first whenever the cache as a whole is over the budget.
+ * Decoding a missing list happens outside of the locks; two readers that miss the same key at once both
+ * decode it and the first one to finish caches it.
+ */
+public class PostingCache {
+    public static final int DEFAULT_SEGMENTS = 16;
+    private static final int ENTRY_OVERHEAD = 96; // the map entry, the key object and the array header
+    private final EvictionPolicy[] segments;
+    private final EvictionPolicy overflow; // the lists bigger than the share of a segment
+    private final long maxBytes;
+    private final long segmentBytes; // the share of the budget of each segment
+    private final AtomicLong bytes = new AtomicLong(); // the memory taken by all the segments
+    private final AtomicInteger overflowEntries = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /***
+     * @param maxBytes - The memory the cached posting lists may take
+     * @param segments - The number of independently locked segments, rounded up to a power of 2
+     * @param policyFactory - Creates the eviction policy of a segment given its budget
+     */
+    public PostingCache(long maxBytes, int segments, LongFunction<EvictionPolicy> policyFactory) {
+        if (maxBytes <= 0 || segments <= 0) {
+            throw new IllegalArgumentException( "The cache needs a positive budget and number of segments" );
+        }
+        int count = 1;
+        while (count < segments) {
+            count <<= 1;
+        }
+        this.maxBytes = maxBytes;
+        segmentBytes = maxBytes / count;
+        this.segments = new EvictionPolicy[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = policyFactory.apply( segmentBytes );
+        }
+        overflow = policyFactory.apply( maxBytes );
+    }
+
+    /***
+     * @param maxBytes - The memory the cached posting lists may take
+     * @return A cache which evicts the least recently used posting lists
+     */
+    public static PostingCache lru(long maxBytes) {
+        return new PostingCache( maxBytes, DEFAULT_SEGMENTS, LruPolicy::new );
+    }
+
+    /***
+     * @param maxBytes - The memory the cached posting lists may take
+     * @return A cache which keeps the frequently used posting lists (W-TinyLFU)
+     */
+    public static PostingCache tinyLfu(long maxBytes) {
+        return new PostingCache( maxBytes, DEFAULT_SEGMENTS, TinyLfuPolicy::new );
+    }
+
+    /***
+     * @param key - The key of a posting list
+     * @return The cached posting list, or null if it is not cached. The array must not be modified.
+     */
+    public int[] get(String key) {
+        EvictionPolicy segment = segmentOf( key );
+        int[] postings;
+        synchronized (segment) {
+            postings = segment.get( key );
+        }
+        if (postings == null && overflowEntries.get() > 0) {
+            synchronized (overflow) {
+                postings = overflow.get( key );
+            }
+        }
+        if (postings == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return postings;
+    }
+
+    /***
+     * Caches a posting list, unless it is already cached.
+     * @param key - The key of the posting list
+     * @param postings - The decoded posting list, which must not be modified afterwards
+     */
+    public void put(String key, int[] postings) {
+        long entryBytes = entryBytes( key, postings );
+        EvictionPolicy segment = entryBytes > segmentBytes ? overflow : segmentOf( key );
+        int evicted = 0;
+        synchronized (segment) {
+            if (!segment.contains( key )) {
+                long before = segment.bytes();
+                evicted = segment.put( key, postings, entryBytes );
+                bytes.addAndGet( segment.bytes() - before );
+                if (segment == overflow) {
+                    overflowEntries.set( overflow.entries() );
+                }
+            }
+        }
+        // the segments take at most the budget together, so only the overflow can take the cache over it
+        while (bytes.get() > maxBytes) {
+            synchronized (overflow) {
+                long freed = overflow.evict();
+                if (freed == 0) {
+                    break;
+                }
+                bytes.addAndGet( -freed );
+                overflowEntries.set( overflow.entries() );
+            }
+            evicted++;
+        }
+        if (evicted > 0) {
+            evictions.add( evicted );
+        }
+    }
+
+    private EvictionPolicy segmentOf(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /***
+     * @param key - The key of a posting list
+     * @param postings - The posting list
+     * @return The memory an entry of the cache takes
+     */
+    static long entryBytes(String key, int[] postings) {
+        return ENTRY_OVERHEAD + 2L * key.length() + 4L * postings.length;
+    }
+
+    /***
+     * @return The number of lookups that found their posting list
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /***
+     * @return The number of lookups that did not find their posting list
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /***
+     * @return The number of posting lists evicted or rejected to stay within the budget
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /***
+     * @return The memory taken by the cached posting lists
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (EvictionPolicy segment : segments) {
+            synchronized (segment) {
+                bytes += segment.bytes();
+            }
+        }
+        synchronized (overflow) {
+            bytes += overflow.bytes();
+        }
+        return bytes;
+    }
+
+    /***
+     * @return The number of cached posting lists
+     */
+    public int getEntries() {
+        int entries = 0;
+        for (EvictionPolicy segment : segments) {
+            synchronized (segment) {
+                entries += segment.entries();
+            }
+        }
+        synchronized (overflow) {
+            entries += overflow.entries();
+        }
+        return entries;
+    }
+
+    /***
+     * @return The memory the cached posting lists may take
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
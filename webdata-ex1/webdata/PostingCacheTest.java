@@ -0,0 +1,146 @@
+package webdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class PostingCacheTest {
+
+    final String DictionaryPath = "D:\\Geffen\\Year_3\\Web_Data\\ex1\\index";
+
+    private static int[] postings(int size)
+    {
+        return new int[size];
+    }
+
+    @Test
+    public void CacheShouldStayWithinBudget() throws IOException
+    {
+        long budget = 64 * 1024;
+        for (PostingCache cache : new PostingCache[]{PostingCache.lru(budget), PostingCache.tinyLfu(budget)}) {
+            for (int i = 0; i < 2000; i++) {
+                cache.put("t" + i, postings(i % 300));
+                cache.get("t" + (i / 2));
+            }
+            assertTrue(cache.getBytes() + " bytes cached", cache.getBytes() <= budget);
+            assertTrue(cache.getEvictionCount() > 0);
+            assertEquals(2000, cache.getHitCount() + cache.getMissCount());
+        }
+    }
+
+    @Test
+    public void ListBiggerThanSegmentShouldBeCached() throws IOException
+    {
+        long budget = 64 * 1024;
+        for (PostingCache cache : new PostingCache[]{PostingCache.lru(budget), PostingCache.tinyLfu(budget)}) {
+            int[] big = postings((int) (budget / PostingCache.DEFAULT_SEGMENTS));
+            cache.put("small", postings(10));
+            cache.put("big", big);
+
+            assertNotNull(cache.get("big"));
+            assertNotNull(cache.get("small"));
+            assertEquals(0, cache.getEvictionCount());
+
+            for (int i = 0; i < 2000; i++) {
+                cache.put("t" + i, postings(200));
+            }
+            assertTrue(cache.getBytes() + " bytes cached", cache.getBytes() <= budget);
+        }
+    }
+
+    @Test
+    public void LruShouldEvictLeastRecentlyUsed() throws IOException
+    {
+        PostingCache cache = new PostingCache(3 * PostingCache.entryBytes("a", postings(10)), 1, LruPolicy::new);
+        cache.put("a", postings(10));
+        cache.put("b", postings(10));
+        cache.put("c", postings(10));
+        assertNotNull(cache.get("a"));
+        cache.put("d", postings(10));
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void TinyLfuShouldKeepPopularListsDuringScan() throws IOException
+    {
+        PostingCache cache = new PostingCache(100 * PostingCache.entryBytes("hot0", postings(50)), 1,
+                TinyLfuPolicy::new);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (cache.get("hot" + i) == null) {
+                    cache.put("hot" + i, postings(50));
+                }
+            }
+        }
+        for (int i = 0; i < 10000; i++) {
+            if (cache.get("cold" + i) == null) {
+                cache.put("cold" + i, postings(50));
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < 50; i++) {
+            kept += cache.get("hot" + i) == null ? 0 : 1;
+        }
+        assertTrue(kept + " popular lists kept", kept >= 45);
+    }
+
+    @Test
+    public void TinyLfuShouldNotEvictProtectedListsForBigColdList() throws IOException
+    {
+        PostingCache cache = new PostingCache(100 * PostingCache.entryBytes("hot0", postings(50)), 1,
+                TinyLfuPolicy::new);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 40; i++) {
+                if (cache.get("hot" + i) == null) {
+                    cache.put("hot" + i, postings(50));
+                }
+            }
+        }
+        // more than the free main space, with nothing on probation to free
+        assertNull(cache.get("cold"));
+        cache.put("cold", postings(120 * 50));
+
+        assertNull(cache.get("cold"));
+        for (int i = 0; i < 40; i++) {
+            assertNotNull("hot" + i, cache.get("hot" + i));
+        }
+    }
+
+    @Test
+    public void CachedReaderShouldReturnSamePostings() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+        IndexReader cached = new IndexReader(DictionaryPath, PostingCache.tinyLfu(1 << 20));
+
+        for (int round = 0; round < 2; round++) {
+            for (String token : new String[]{"person", "the", "Habanero", "jhskdf"}) {
+                assertEquals(list(ir.getReviewsWithToken(token)), list(cached.getReviewsWithToken(token)));
+            }
+            for (String product : new String[]{"B006F2NYI2", "B001E4KFG0", "B009HINRX9"}) {
+                assertEquals(list(ir.getProductReviews(product)), list(cached.getProductReviews(product)));
+            }
+        }
+        assertEquals(7, cached.getPostingCache().getHitCount());
+        assertEquals(7, cached.getPostingCache().getMissCount());
+    }
+
+    private static List<Integer> list(Enumeration<Integer> enumeration)
+    {
+        return Collections.list(enumeration);
+    }
+
+}
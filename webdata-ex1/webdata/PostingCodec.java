@@ -0,0 +1,105 @@
+package webdata;
+
+import java.io.IOException;
+
+/***
+ * Encodes the numbers of a posting list: the gaps between the review ids of its postings, and for tokens
+ * their frequencies, all of them positive. A posting list is written as blocks of at most
+ * IndexHeader.SKIP_INTERVAL postings, so the skip entries of the list point at the start of a block, and
+ * a block is read whole into arrays when the iterator reaches it.
+ * The codec of an index is chosen when it is written and recorded in its header by its id.
+ */
+public interface PostingCodec {
+    /***
+     * Gamma codes of the gap and the frequency of each posting in turn, the format of the indexes written
+     * before the codecs were added.
+     */
+    int GAMMA = 0;
+    /***
+     * Elias delta codes, in the order of the gamma codec.
+     */
+    int ELIAS_DELTA = 1;
+    /***
+     * Variable byte codes, in the order of the gamma codec, from a whole byte.
+     */
+    int VBYTE = 2;
+    /***
+     * The gaps of a block and then its frequencies, in groups of four numbers after a byte of their lengths.
+     */
+    int GROUP_VARINT = 3;
+    /***
+     * The gaps of a block and then its frequencies, each packed with the same number of bits and the few
+     * numbers that do not fit patched after them.
+     */
+    int PFOR_DELTA = 4;
+
+    /***
+     * @return The id of the codec, recorded in the header of the index
+     */
+    int id();
+
+    /***
+     * @return The name of the codec
+     */
+    String name();
+
+    /***
+     * @return Whether the codec writes whole bytes, so the postings of a list start at a whole byte
+     */
+    boolean isByteAligned();
+
+    /***
+     * Writes a block of postings.
+     * @param out - The stream to write into
+     * @param gaps - The gap of each posting from the review id of the previous posting
+     * @param freqs - The frequency of each posting, or null for postings with no frequencies
+     * @param count - The number of postings of the block
+     */
+    void writeBlock(BitOutputStream out, int[] gaps, int[] freqs, int count) throws IOException;
+
+    /***
+     * Reads a block of postings written by writeBlock.
+     * @param in - The stream to read from, at the start of the block
+     * @param gaps - The array to fill with the gaps
+     * @param freqs - The array to fill with the frequencies, or null for postings with no frequencies
+     * @param count - The number of postings of the block
+     */
+    void readBlock(BitInputStream in, int[] gaps, int[] freqs, int count);
+
+    /***
+     * @param id - The id of a codec
+     * @return The codec
+     * @throws IllegalArgumentException if there is no codec with the id
+     */
+    static PostingCodec forId(int id) {
+        switch (id) {
+            case GAMMA:
+                return new GammaCodec();
+            case ELIAS_DELTA:
+                return new EliasDeltaCodec();
+            case VBYTE:
+                return new VByteCodec();
+            case GROUP_VARINT:
+                return new GroupVarintCodec();
+            case PFOR_DELTA:
+                return new PForDeltaCodec();
+            default:
+                throw new IllegalArgumentException( "Unknown posting codec: " + id );
+        }
+    }
+
+    /***
+     * @param name - The name of a codec, ignoring case
+     * @return The codec
+     * @throws IllegalArgumentException if there is no codec with the name
+     */
+    static PostingCodec forName(String name) {
+        for (int id = GAMMA; id <= PFOR_DELTA; id++) {
+            PostingCodec codec = forId( id );
+            if (codec.name().equalsIgnoreCase( name )) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException( "Unknown posting codec: " + name );
+    }
+}
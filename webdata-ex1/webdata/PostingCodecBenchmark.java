@@ -0,0 +1,179 @@
+package webdata;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/***
+ * Compares the posting codecs in the size of the posting lists, in bits per posting (a review id gap and a
+ * frequency), and in the time to decode them, on the posting lists of the tokens of review files and of
+ * synthetic corpora.
+ * Usage: PostingCodecBenchmark [corpus]...
+ * A corpus is a review file, or synthetic:reviews for that many reviews of 60 tokens drawn from a Zipf
+ * distribution over 200000 distinct tokens. With no arguments the bundled review files and two synthetic
+ * corpora are compared.
+ */
+public class PostingCodecBenchmark {
+    private static final String[] DEFAULT_CORPORA = {"Datasets-20210412\\100.txt", "Datasets-20210412\\1000.txt",
+            "synthetic:20000", "synthetic:200000"};
+    private static final int SYNTHETIC_LENGTH = 60;
+    private static final int SYNTHETIC_TOKENS = 200000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        for (String corpus : args.length > 0 ? args : DEFAULT_CORPORA) {
+            List<int[]> lists = corpus.startsWith( "synthetic:" ) ?
+                    synthetic( Integer.parseInt( corpus.substring( "synthetic:".length() ) ) ) : read( corpus );
+            long postings = 0;
+            for (int[] list : lists) {
+                postings += list.length / 2;
+            }
+            System.out.printf( "%s: %d lists, %d postings%n", corpus, lists.size(), postings );
+            for (int id = PostingCodec.GAMMA; id <= PostingCodec.PFOR_DELTA; id++) {
+                measure( PostingCodec.forId( id ), lists, postings );
+            }
+        }
+    }
+
+    /***
+     * Encodes all the lists with a codec, checks that they decode to the same postings, and prints the bits
+     * per posting and the fastest decoding time of a few rounds.
+     */
+    private static void measure(PostingCodec codec, List<int[]> lists, long postings) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BitOutputStream out = new BitOutputStream( bytes );
+        long[] starts = new long[lists.size()];
+        int[] gaps = new int[IndexHeader.SKIP_INTERVAL];
+        int[] freqs = new int[IndexHeader.SKIP_INTERVAL];
+        for (int l = 0; l < lists.size(); l++) {
+            if (codec.isByteAligned()) {
+                out.align();
+            }
+            starts[l] = out.position();
+            int[] list = lists.get( l );
+            int prevReviewId = 0;
+            for (int from = 0; from < list.length / 2; from += IndexHeader.SKIP_INTERVAL) {
+                int count = Math.min( list.length / 2 - from, IndexHeader.SKIP_INTERVAL );
+                for (int i = 0; i < count; i++) {
+                    gaps[i] = list[2 * (from + i)] - prevReviewId;
+                    freqs[i] = list[2 * (from + i) + 1];
+                    prevReviewId = list[2 * (from + i)];
+                }
+                codec.writeBlock( out, gaps, freqs, count );
+            }
+        }
+        long bits = out.position();
+        out.close();
+        byte[] encoded = bytes.toByteArray();
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            BitInputStream in = new BitInputStream( encoded );
+            long start = System.nanoTime();
+            for (int l = 0; l < lists.size(); l++) {
+                in.seek( starts[l] );
+                int[] list = lists.get( l );
+                int reviewId = 0;
+                for (int from = 0; from < list.length / 2; from += IndexHeader.SKIP_INTERVAL) {
+                    int count = Math.min( list.length / 2 - from, IndexHeader.SKIP_INTERVAL );
+                    codec.readBlock( in, gaps, freqs, count );
+                    if (round == 0) { // the first round checks the postings, and is a warm up
+                        for (int i = 0; i < count; i++) {
+                            reviewId += gaps[i];
+                            if (reviewId != list[2 * (from + i)] || freqs[i] != list[2 * (from + i) + 1]) {
+                                throw new IllegalStateException( codec.name() + " decoded a different posting" );
+                            }
+                        }
+                    }
+                }
+            }
+            if (round > 0) {
+                best = Math.min( best, System.nanoTime() - start );
+            }
+        }
+        System.out.printf( "  %-12s %6.2f bits/posting  decode %6.2f ns/posting%n", codec.name(),
+                (double) bits / postings, (double) best / postings );
+    }
+
+    /***
+     * @return The posting lists of the tokens of the review texts of a file, as pairs of review id and
+     * frequency, one review per review text line
+     */
+    private static List<int[]> read(String fileName) throws Exception {
+        Map<String, int[]> lists = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        Tokenizer tokenizer = new Tokenizer();
+        BufferedReader reader = new BufferedReader( new FileReader( fileName ) );
+        int reviewId = 0;
+        String line = reader.readLine();
+        while (line != null) {
+            if (line.startsWith( "review/text:" )) {
+                reviewId++;
+                tokenizer.reset( line );
+                Map<String, Integer> counts = new HashMap<>();
+                while (tokenizer.next()) {
+                    counts.merge( tokenizer.token(), 1, Integer::sum );
+                }
+                for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                    add( lists, sizes, count.getKey(), reviewId, count.getValue() );
+                }
+            }
+            line = reader.readLine();
+        }
+        reader.close();
+        return trimmed( lists, sizes );
+    }
+
+    /***
+     * @return The posting lists of a corpus of reviews of Zipf distributed tokens
+     */
+    private static List<int[]> synthetic(int reviews) {
+        Random random = new Random( 11 );
+        double[] cumulative = new double[SYNTHETIC_TOKENS];
+        double sum = 0;
+        for (int i = 0; i < SYNTHETIC_TOKENS; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Map<String, int[]> lists = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (int reviewId = 1; reviewId <= reviews; reviewId++) {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (int i = 0; i < SYNTHETIC_LENGTH; i++) {
+                int token = Arrays.binarySearch( cumulative, random.nextDouble() * sum );
+                counts.merge( token < 0 ? -token - 1 : token, 1, Integer::sum );
+            }
+            for (Map.Entry<Integer, Integer> count : counts.entrySet()) {
+                add( lists, sizes, "t" + count.getKey(), reviewId, count.getValue() );
+            }
+        }
+        return trimmed( lists, sizes );
+    }
+
+    private static void add(Map<String, int[]> lists, Map<String, Integer> sizes, String token, int reviewId,
+                            int freq) {
+        int[] list = lists.computeIfAbsent( token, t -> new int[4] );
+        int size = sizes.getOrDefault( token, 0 );
+        if (size == list.length) {
+            list = Arrays.copyOf( list, 2 * size );
+            lists.put( token, list );
+        }
+        list[size] = reviewId;
+        list[size + 1] = freq;
+        sizes.put( token, size + 2 );
+    }
+
+    private static List<int[]> trimmed(Map<String, int[]> lists, Map<String, Integer> sizes) {
+        List<int[]> trimmed = new ArrayList<>();
+        for (Map.Entry<String, int[]> list : lists.entrySet()) {
+            trimmed.add( Arrays.copyOf( list.getValue(), sizes.get( list.getKey() ) ) );
+        }
+        return trimmed;
+    }
+}
@@ -0,0 +1,83 @@
+package webdata;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/***
+ * Walks all the posting lists of a posting lists file a window of review ids at a time, for the passes of
+ * the writer that fill an array of the reviews of a window from the lists written. Each list keeps where the
+ * previous window left it, its resume point and its next review id, so a window only opens the lists that
+ * have postings in it and continues each of them instead of decoding it again from its start. This takes
+ * 20 bytes for each list.
+ */
+public class PostingCursors {
+    private final ByteBuffer postingLists;
+    private final IntBuffer positions;
+    private final int lists;
+    private final int version;
+    private final PostingCodec codec;
+    private final boolean withFrequencies;
+    private final int[] nextDocs; // the first review id of each list after the last window, 0 before the first
+    private final long[] resumePositions;
+    private final int[] resumeCounts;
+    private final int[] resumeDocs;
+
+    /***
+     * @param postingLists - The mapped posting lists file
+     * @param positions - The first byte of each posting list
+     * @param lists - The number of posting lists
+     * @param version - The on disk format of the index
+     * @param codec - The codec of the posting lists
+     * @param withFrequencies - Whether the postings hold frequencies (tokens) or only ids (products)
+     */
+    public PostingCursors(ByteBuffer postingLists, IntBuffer positions, int lists, int version, PostingCodec codec,
+                          boolean withFrequencies) {
+        this.postingLists = postingLists;
+        this.positions = positions;
+        this.lists = lists;
+        this.version = version;
+        this.codec = codec;
+        this.withFrequencies = withFrequencies;
+        nextDocs = new int[lists];
+        resumePositions = new long[lists];
+        resumeCounts = new int[lists];
+        resumeDocs = new int[lists];
+    }
+
+    /***
+     * Opens a posting list on its first posting in a window. The windows must be walked in increasing order.
+     * @param list - The index of the posting list
+     * @param from - The first review id of the window
+     * @param to - The review id after the window
+     * @return An iterator on the first posting of the list in the window, which is moved through the postings
+     * of the window and handed back to close, or null if the list has no postings in the window
+     */
+    public PostingIterator open(int list, int from, int to) {
+        if (nextDocs[list] >= to) {
+            return null;
+        }
+        int end = list < lists - 1 ? positions.get( list + 1 ) : postingLists.limit();
+        PostingIterator postings = new PostingIterator( postingLists, positions.get( list ), end, version, codec,
+                withFrequencies );
+        if (nextDocs[list] > 0) {
+            postings.resume( resumePositions[list], resumeCounts[list], resumeDocs[list] );
+        }
+        if (postings.advance( from ) >= to) {
+            close( list, postings );
+            return null;
+        }
+        return postings;
+    }
+
+    /***
+     * Remembers where the next window continues a posting list.
+     * @param list - The index of the posting list
+     * @param postings - The iterator returned by open, on the first posting of the list after the window
+     */
+    public void close(int list, PostingIterator postings) {
+        nextDocs[list] = postings.docId();
+        resumePositions[list] = postings.getResumePosition();
+        resumeCounts[list] = postings.getResumeCount();
+        resumeDocs[list] = postings.getResumeDoc();
+    }
+}
@@ -0,0 +1,45 @@
+package webdata;
+
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+/***
+ * Adapts a PostingIterator to the Enumeration of IndexReader: review id and frequency of each posting one
+ * after the other for tokens, or only review ids for products. Postings are decoded as the enumeration
+ * is advanced.
+ */
+public class PostingEnumeration implements Enumeration<Integer> {
+    private final PostingIterator postings;
+    private boolean freqPending; // whether the frequency of the current posting was not returned yet
+    private boolean docPending; // whether the next posting was decoded and its id not returned yet
+
+    /***
+     * @param postings - The posting list to enumerate, positioned before its first posting
+     */
+    public PostingEnumeration(PostingIterator postings) {
+        this.postings = postings;
+    }
+
+    @Override
+    public boolean hasMoreElements() {
+        if (freqPending || docPending) {
+            return true;
+        }
+        docPending = postings.nextDoc() != PostingIterator.NO_MORE_DOCS;
+        return docPending;
+    }
+
+    @Override
+    public Integer nextElement() {
+        if (freqPending) {
+            freqPending = false;
+            return postings.freq();
+        }
+        if (!hasMoreElements()) {
+            throw new NoSuchElementException();
+        }
+        docPending = false;
+        freqPending = postings.hasFrequencies();
+        return postings.docId();
+    }
+}
@@ -0,0 +1,356 @@
+package webdata;
+
+import java.nio.ByteBuffer;
+
+/***
+ * Iterates over a posting list by decoding it lazily, one posting at a time, straight from the mapped
+ * posting lists file. A caller that stops early, or only asks for the number of postings, does not pay
+ * for decoding the rest of the list.
+ * The iterator starts before the first posting; call nextDoc() to move to it.
+ * For an index with positions, the positions of the current posting are decoded only when asked for.
+ * Gamma coded postings are decoded one at a time; the postings of the other codecs are decoded a block of
+ * IndexHeader.SKIP_INTERVAL postings at a time, when the iterator moves into the block.
+ */
+public class PostingIterator implements DocIterator {
+
+    private final ByteBuffer postings;
+    private final int start; // the first byte of the posting list
+    private final int end; // the byte after the posting list
+    private final boolean legacy;
+    private final boolean withFrequencies;
+    private final PostingCodec blockCodec; // the codec of the postings, null if they are decoded one at a time
+    private int[] blockGaps; // the gaps of the postings of the current block
+    private int[] blockFreqs; // the frequencies of the postings of the current block
+    private BitInputStream bits;
+    private int position; // the next byte to decode, for the legacy format
+    private int size; // the number of postings, -1 until it is known
+    private int read; // the number of postings decoded so far
+    private int doc;
+    private int freq;
+    private long resumePosition; // the bit position of the current posting, or of the start of its block
+    private int resumeCount; // the number of postings before resumePosition
+    private int resumeDoc; // the review id of the posting before resumePosition, -1 if there is none
+    private int skips; // the number of skip entries
+    private long skipsStart; // the bit position of the first skip entry
+    private long postingsStart; // the bit position of the first posting, after the skip entries
+    private BitInputStream positionBits; // the positions of the token, null if the index has no positions
+    private long positionsSkips; // the bit position of the skip entries of the positions
+    private long positionsStart; // the bit position of the positions of the first posting, after the skip entries
+    private long positionsOffset; // the bit position of the positions of a posting at or before the current one
+    private int pendingPositions; // the number of positions between positionsOffset and the current posting
+    private boolean positionsRead; // whether the positions of the current posting were decoded or are not needed
+    private int[] positions;
+
+    /***
+     * @param postings - The mapped posting lists file
+     * @param start - The first byte of the posting list
+     * @param end - The byte after the posting list
+     * @param version - The on disk format of the index
+     * @param withFrequencies - Whether the postings hold frequencies (tokens) or only ids (products)
+     */
+    public PostingIterator(ByteBuffer postings, int start, int end, int version, boolean withFrequencies) {
+        this( postings, start, end, version, null, withFrequencies );
+    }
+
+    /***
+     * @param postings - The mapped posting lists file
+     * @param start - The first byte of the posting list
+     * @param end - The byte after the posting list
+     * @param version - The on disk format of the index
+     * @param codec - The codec of the posting lists, null for gamma codes
+     * @param withFrequencies - Whether the postings hold frequencies (tokens) or only ids (products)
+     */
+    public PostingIterator(ByteBuffer postings, int start, int end, int version, PostingCodec codec,
+                           boolean withFrequencies) {
+        this.postings = postings;
+        this.start = start;
+        this.end = end;
+        this.withFrequencies = withFrequencies;
+        legacy = version == IndexHeader.LEGACY_VERSION;
+        blockCodec = legacy || codec == null || codec.id() == PostingCodec.GAMMA ? null : codec;
+        bits = new BitInputStream( postings, start, end );
+        position = start;
+        size = legacy ? -1 : bits.readGamma();
+        if (version >= IndexHeader.SKIPS_VERSION && size > 0) {
+            skips = (size - 1) / IndexHeader.SKIP_INTERVAL;
+            skipsStart = bits.position();
+        }
+        postingsStart = bits.position() + 64L * skips;
+        if (blockCodec != null && blockCodec.isByteAligned()) {
+            postingsStart = (postingsStart + 7) & ~7L;
+        }
+        bits.seek( postingsStart );
+        doc = -1;
+    }
+
+    /***
+     * Attaches the positions of the token to the iterator, so they can be read for each posting.
+     * @param file - The mapped word positions file
+     * @param start - The first byte of the positions of the token
+     * @param end - The byte after the positions of the token
+     * @return This iterator
+     */
+    public PostingIterator withPositions(ByteBuffer file, int start, int end) {
+        positionBits = new BitInputStream( file, start, end );
+        positionsSkips = 8L * start;
+        positionsStart = positionsSkips + 32L * skips;
+        positionsOffset = positionsStart;
+        pendingPositions = 0;
+        positionsRead = true;
+        positions = new int[8];
+        return this;
+    }
+
+    /***
+     * @return An iterator with no postings
+     */
+    public static PostingIterator empty() {
+        return new PostingIterator( ByteBuffer.allocate( 0 ), 0, 0, IndexHeader.LEGACY_VERSION, false );
+    }
+
+    /***
+     * Moves to the next posting.
+     * @return The review id of the next posting, or NO_MORE_DOCS if there are no more postings
+     */
+    @Override
+    public int nextDoc() {
+        if (positionBits != null) {
+            // the positions of the posting that is left behind are skipped over when positions are next read
+            if (!positionsRead) {
+                pendingPositions += freq;
+            }
+            positionsRead = false;
+        }
+        if (legacy ? position >= end : read == size) {
+            doc = NO_MORE_DOCS;
+            return doc;
+        }
+        if (blockCodec != null) {
+            int inBlock = read % IndexHeader.SKIP_INTERVAL;
+            if (inBlock == 0) {
+                setResumePoint( bits.position() );
+                readBlock();
+            }
+            doc = (read == 0 ? 0 : doc) + blockGaps[inBlock];
+            freq = withFrequencies ? blockFreqs[inBlock] : 1;
+            read++;
+            return doc;
+        }
+        setResumePoint( legacy ? 8L * position : bits.position() );
+        doc = (read == 0 ? 0 : doc) + nextNumber();
+        freq = withFrequencies ? nextNumber() : 1;
+        read++;
+        return doc;
+    }
+
+    /***
+     * Moves to the first posting whose review id is at least the given target. Skip entries are used to
+     * jump over the postings before the target without decoding them.
+     * @param target - The review id to advance to
+     * @return The review id of the posting moved to, or NO_MORE_DOCS if there is no such posting. If the
+     * current posting is already at least the target, it stays the current posting.
+     */
+    @Override
+    public int advance(int target) {
+        if (doc >= target) {
+            return doc;
+        }
+        if (skips > 0) {
+            // binary search for the last skip entry ahead of the current posting that stays before the target
+            int low = read / IndexHeader.SKIP_INTERVAL + 1;
+            int high = skips;
+            int found = -1;
+            long position = bits.position();
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                bits.seek( skipsStart + 64L * (middle - 1) );
+                if (bits.readBits( 32 ) < target) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (found == -1) {
+                bits.seek( position );
+            } else {
+                bits.seek( skipsStart + 64L * (found - 1) );
+                doc = (int) bits.readBits( 32 );
+                bits.seek( postingsStart + bits.readBits( 32 ) );
+                read = found * IndexHeader.SKIP_INTERVAL;
+                if (positionBits != null) {
+                    positionBits.seek( positionsSkips + 32L * (found - 1) );
+                    positionsOffset = positionsStart + positionBits.readBits( 32 );
+                    pendingPositions = 0;
+                    positionsRead = true; // the posting before the skipped to posting has no positions to skip
+                }
+            }
+        }
+        while (doc < target) {
+            nextDoc();
+        }
+        return doc;
+    }
+
+    /***
+     * Moves the iterator to where an earlier iterator over the same list could be resumed, so the postings
+     * from there are decoded without decoding the postings before them again. The positions of the postings
+     * are not resumed.
+     * @param position - The resume position of the earlier iterator
+     * @param count - The resume count of the earlier iterator
+     * @param previousDoc - The resume doc of the earlier iterator
+     * @return This iterator, before the posting at the resume position
+     */
+    public PostingIterator resume(long position, int count, int previousDoc) {
+        if (legacy) {
+            this.position = (int) (position >>> 3);
+        } else {
+            bits.seek( position );
+        }
+        read = count;
+        doc = previousDoc;
+        return this;
+    }
+
+    private void setResumePoint(long position) {
+        resumePosition = position;
+        resumeCount = read;
+        resumeDoc = doc;
+    }
+
+    /***
+     * @return The bit position from which the list can be decoded again up to the current posting: the start
+     * of the current posting, or of its block for the codecs decoded a block at a time
+     */
+    public long getResumePosition() {
+        return resumePosition;
+    }
+
+    /***
+     * @return The number of postings before the resume position
+     */
+    public int getResumeCount() {
+        return resumeCount;
+    }
+
+    /***
+     * @return The review id of the posting before the resume position, -1 if there is none
+     */
+    public int getResumeDoc() {
+        return resumeDoc;
+    }
+
+    /***
+     * Decodes the block of postings that starts at the current posting.
+     */
+    private void readBlock() {
+        if (blockGaps == null) {
+            blockGaps = new int[Math.min( size, IndexHeader.SKIP_INTERVAL )];
+            blockFreqs = withFrequencies ? new int[blockGaps.length] : null;
+        }
+        blockCodec.readBlock( bits, blockGaps, blockFreqs, Math.min( size - read, IndexHeader.SKIP_INTERVAL ) );
+    }
+
+    /***
+     * @return The next gamma coded number of the posting list
+     */
+    private int nextNumber() {
+        if (legacy) {
+            // each legacy code is a zero byte, a byte that counts the padding, and the padded code
+            int padding = Integer.bitCount( postings.get( position + 1 ) & 0xFF );
+            bits.seek( 8L * (position + 2) + padding );
+            int number = bits.readGamma();
+            position = (int) ((bits.position() + 7) >>> 3);
+            return number;
+        }
+        return bits.readGamma();
+    }
+
+    /***
+     * @return The review id of the current posting, -1 before the first posting
+     */
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    /***
+     * @return The frequency of the token in the current review (1 for products)
+     */
+    public int freq() {
+        return freq;
+    }
+
+    /***
+     * Decodes the positions of the token in the review of the current posting. The positions of the postings
+     * passed over since the last read are skipped without being kept.
+     * @return The positions, by increasing order, in an array that is reused by the next call. Only the first
+     * freq() integers are valid.
+     * @throws IllegalStateException if the index has no positions
+     */
+    public int[] positions() {
+        if (positionBits == null) {
+            throw new IllegalStateException( "The index has no positions" );
+        }
+        if (!positionsRead) {
+            positionBits.seek( positionsOffset );
+            for (int i = 0; i < pendingPositions; i++) {
+                positionBits.readGamma();
+            }
+            if (freq > positions.length) {
+                positions = new int[Math.max( freq, 2 * positions.length )];
+            }
+            int position = -1;
+            for (int i = 0; i < freq; i++) {
+                position += positionBits.readGamma();
+                positions[i] = position;
+            }
+            positionsOffset = positionBits.position();
+            pendingPositions = 0;
+            positionsRead = true;
+        }
+        return positions;
+    }
+
+    /***
+     * @return Whether the iterator can read the positions of its postings
+     */
+    public boolean hasPositions() {
+        return positionBits != null;
+    }
+
+    /***
+     * @return Whether the postings hold frequencies
+     */
+    public boolean hasFrequencies() {
+        return withFrequencies;
+    }
+
+    /***
+     * @return The number of postings in the list, which is the document frequency of the term
+     */
+    @Override
+    public int cost() {
+        return size();
+    }
+
+    /***
+     * @return The number of postings in the list. For the legacy format, which does not store it, the
+     * codes are counted without decoding them.
+     */
+    public int size() {
+        if (size == -1) {
+            int numbers = 0;
+            BitInputStream codes = new BitInputStream( postings, start, end );
+            for (int i = start; i < end; numbers++) {
+                int padding = Integer.bitCount( postings.get( i + 1 ) & 0xFF );
+                // the padding and the code fill whole bytes, and the code is twice its unary part plus one
+                codes.seek( 8L * (i + 2) + padding );
+                int length = Long.numberOfLeadingZeros( ~codes.readBits( 64 ) );
+                i += 2 + (padding + 2 * length + 1) / 8;
+            }
+            size = withFrequencies ? numbers / 2 : numbers;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,372 @@
+package webdata;
+
+import java.util.Arrays;
+
+/***
+ * The in memory index that is built while writing the index. Each term is interned into an int ordinal
+ * by an open addressing hash table, and the posting list of each ordinal is kept in a growable int array:
+ * pairs of review id and frequency for tokens, or only review ids for products.
+ * Terms can be added straight from a char buffer, so adding an existing term allocates nothing.
+ * A table of tokens may also keep the positions of the tokens in the reviews: for each term, the positions of
+ * its occurrences in the order they were added, so the positions of each posting follow each other and their
+ * number is the frequency of the posting.
+ */
+public class PostingsTable {
+    private static final int INITIAL_TERMS = 1024;
+    private static final int INITIAL_POSTINGS = 4;
+    private static final int TERM_OVERHEAD = 72; // estimated bytes of a new term, besides its characters
+
+    private final boolean withFrequencies;
+    private final boolean withPositions;
+    private int[] slots; // ordinal + 1 of the term in each slot of the hash table, 0 for an empty slot
+    private String[] terms; // the term of each ordinal
+    private int[] hashes; // the hash code of each term
+    private int[][] postings; // the posting list of each ordinal
+    private int[] sizes; // the number of integers used in each posting list
+    private int[][] positions; // the positions of the occurrences of each ordinal, null without positions
+    private int[] positionsSizes; // the number of positions of each ordinal
+    private int size; // the number of terms
+    private long memory; // estimated bytes used by the table
+
+    /***
+     * Creates an empty table.
+     * @param withFrequencies - Whether the posting lists hold frequencies (tokens) or only ids (products)
+     */
+    public PostingsTable(boolean withFrequencies) {
+        this( withFrequencies, false );
+    }
+
+    /***
+     * Creates an empty table.
+     * @param withFrequencies - Whether the posting lists hold frequencies (tokens) or only ids (products)
+     * @param withPositions - Whether to keep the positions of the tokens, which requires frequencies
+     */
+    public PostingsTable(boolean withFrequencies, boolean withPositions) {
+        this.withFrequencies = withFrequencies;
+        this.withPositions = withPositions && withFrequencies;
+        slots = new int[2 * INITIAL_TERMS];
+        terms = new String[INITIAL_TERMS];
+        hashes = new int[INITIAL_TERMS];
+        postings = new int[INITIAL_TERMS][];
+        sizes = new int[INITIAL_TERMS];
+        if (this.withPositions) {
+            positions = new int[INITIAL_TERMS][];
+            positionsSizes = new int[INITIAL_TERMS];
+        }
+        memory = 4L * slots.length + 16L * INITIAL_TERMS;
+    }
+
+    /***
+     * Adds an occurrence of a term in a review. Reviews must be added by increasing id.
+     * @param chars - The buffer that holds the term
+     * @param length - The length of the term
+     * @param reviewId - The id of the review
+     */
+    public void add(char[] chars, int length, int reviewId) {
+        add( chars, length, reviewId, -1 );
+    }
+
+    /***
+     * Adds an occurrence of a term in a review at a given position. Reviews must be added by increasing id,
+     * and the occurrences of a review by increasing position.
+     * @param chars - The buffer that holds the term
+     * @param length - The length of the term
+     * @param reviewId - The id of the review
+     * @param position - The index of the occurrence among the tokens of the review, kept if the table
+     * has positions
+     */
+    public void add(char[] chars, int length, int reviewId, int position) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int ordinal = slots[slot] - 1;
+            if (hashes[ordinal] == hash && equals( terms[ordinal], chars, length )) {
+                addReview( ordinal, reviewId );
+                addPosition( ordinal, position );
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int ordinal = newTerm( new String( chars, 0, length ), hash, slot );
+        addReview( ordinal, reviewId );
+        addPosition( ordinal, position );
+    }
+
+    /***
+     * Adds an occurrence of a term in a review. Reviews must be added by increasing id.
+     * @param term - The term
+     * @param reviewId - The id of the review
+     */
+    public void add(String term, int reviewId) {
+        addReview( intern( term ), reviewId );
+    }
+
+    /***
+     * Appends the posting lists of another table to the posting lists of this table. All the review ids of
+     * the other table must be bigger than the ones of this table.
+     * @param other - The table to append
+     */
+    public void addAll(PostingsTable other) {
+        for (int otherOrdinal = 0; otherOrdinal < other.size; otherOrdinal++) {
+            int ordinal = intern( other.terms[otherOrdinal] );
+            int otherSize = other.sizes[otherOrdinal];
+            int[] list = postings[ordinal];
+            if (sizes[ordinal] + otherSize > list.length) {
+                list = Arrays.copyOf( list, Math.max( sizes[ordinal] + otherSize,
+                        list.length + (list.length >> 1) ) );
+                memory += 4L * (list.length - postings[ordinal].length);
+                postings[ordinal] = list;
+            }
+            System.arraycopy( other.postings[otherOrdinal], 0, list, sizes[ordinal], otherSize );
+            sizes[ordinal] += otherSize;
+            if (withPositions) {
+                appendPositions( ordinal, other.positions[otherOrdinal], other.positionsSizes[otherOrdinal] );
+            }
+        }
+    }
+
+    /***
+     * Appends positions to the positions of a term.
+     * @param ordinal - The ordinal of the term
+     * @param added - The positions to append
+     * @param size - The number of positions in added
+     */
+    private void appendPositions(int ordinal, int[] added, int size) {
+        int[] list = positions[ordinal];
+        if (positionsSizes[ordinal] + size > list.length) {
+            list = Arrays.copyOf( list, Math.max( positionsSizes[ordinal] + size, list.length + (list.length >> 1) ) );
+            memory += 4L * (list.length - positions[ordinal].length);
+            positions[ordinal] = list;
+        }
+        System.arraycopy( added, 0, list, positionsSizes[ordinal], size );
+        positionsSizes[ordinal] += size;
+    }
+
+    /***
+     * Finds the ordinal of a term, adding it to the table if it is new.
+     * @param term - The term
+     * @return The ordinal of the term
+     */
+    private int intern(String term) {
+        int hash = term.hashCode();
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int ordinal = slots[slot] - 1;
+            if (hashes[ordinal] == hash && terms[ordinal].equals( term )) {
+                return ordinal;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return newTerm( term, hash, slot );
+    }
+
+    /***
+     * Adds a new term to the table.
+     * @param term - The new term
+     * @param hash - The hash code of the term
+     * @param slot - The empty slot of the term in the hash table
+     * @return The ordinal of the new term
+     */
+    private int newTerm(String term, int hash, int slot) {
+        if (size == terms.length) {
+            int capacity = 2 * terms.length;
+            terms = Arrays.copyOf( terms, capacity );
+            hashes = Arrays.copyOf( hashes, capacity );
+            postings = Arrays.copyOf( postings, capacity );
+            sizes = Arrays.copyOf( sizes, capacity );
+            if (withPositions) {
+                positions = Arrays.copyOf( positions, capacity );
+                positionsSizes = Arrays.copyOf( positionsSizes, capacity );
+            }
+            memory += 16L * (capacity - size);
+        }
+        int ordinal = size++;
+        terms[ordinal] = term;
+        hashes[ordinal] = hash;
+        postings[ordinal] = new int[withFrequencies ? 2 * INITIAL_POSTINGS : INITIAL_POSTINGS];
+        memory += TERM_OVERHEAD + 2L * term.length() + 4L * postings[ordinal].length;
+        if (withPositions) {
+            positions[ordinal] = new int[INITIAL_POSTINGS];
+            memory += 16 + 4L * INITIAL_POSTINGS;
+        }
+        slots[slot] = ordinal + 1;
+        if (2 * size > slots.length) {
+            rehash();
+        }
+        return ordinal;
+    }
+
+    /***
+     * Doubles the size of the hash table.
+     */
+    private void rehash() {
+        memory += 4L * slots.length;
+        slots = new int[2 * slots.length];
+        int mask = slots.length - 1;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int slot = hashes[ordinal] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = ordinal + 1;
+        }
+    }
+
+    /***
+     * Adds a review to the posting list of a term, or increments its frequency if it is the last review.
+     * @param ordinal - The ordinal of the term
+     * @param reviewId - The id of the review
+     */
+    private void addReview(int ordinal, int reviewId) {
+        int[] list = postings[ordinal];
+        int listSize = sizes[ordinal];
+        if (withFrequencies) {
+            if (listSize > 0 && list[listSize - 2] == reviewId) {
+                list[listSize - 1]++;
+                return;
+            }
+            append( ordinal, reviewId );
+            append( ordinal, 1 );
+        } else if (listSize == 0 || list[listSize - 1] != reviewId) {
+            append( ordinal, reviewId );
+        }
+    }
+
+    /***
+     * Appends a position to the positions of a term, if the table keeps positions.
+     * @param ordinal - The ordinal of the term
+     * @param position - The position of the occurrence in its review
+     */
+    private void addPosition(int ordinal, int position) {
+        if (!withPositions) {
+            return;
+        }
+        int[] list = positions[ordinal];
+        if (positionsSizes[ordinal] == list.length) {
+            list = Arrays.copyOf( list, list.length + (list.length >> 1) );
+            memory += 4L * (list.length - positions[ordinal].length);
+            positions[ordinal] = list;
+        }
+        list[positionsSizes[ordinal]++] = position;
+    }
+
+    /***
+     * Appends an integer to the posting list of a term, growing the list if it is full.
+     * @param ordinal - The ordinal of the term
+     * @param number - The integer to append
+     */
+    private void append(int ordinal, int number) {
+        int[] list = postings[ordinal];
+        if (sizes[ordinal] == list.length) {
+            list = Arrays.copyOf( list, list.length + (list.length >> 1) );
+            memory += 4L * (list.length - postings[ordinal].length);
+            postings[ordinal] = list;
+        }
+        list[sizes[ordinal]++] = number;
+    }
+
+    /***
+     * @param term - A term
+     * @param chars - A buffer that holds a term
+     * @param length - The length of the term in the buffer
+     * @return Whether the terms are equal
+     */
+    private static boolean equals(String term, char[] chars, int length) {
+        if (term.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (term.charAt( i ) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /***
+     * @return The ordinals of all the terms, sorted by the lexicographic order of the terms
+     */
+    public int[] sortedOrdinals() {
+        String[] sortedTerms = Arrays.copyOf( terms, size );
+        Arrays.sort( sortedTerms );
+        int[] ordinals = new int[size];
+        for (int i = 0; i < size; i++) {
+            ordinals[i] = intern( sortedTerms[i] );
+        }
+        return ordinals;
+    }
+
+    /***
+     * @return The number of terms in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /***
+     * @return Whether the posting lists hold frequencies
+     */
+    public boolean hasFrequencies() {
+        return withFrequencies;
+    }
+
+    /***
+     * @return Whether the table keeps the positions of the tokens
+     */
+    public boolean hasPositions() {
+        return withPositions;
+    }
+
+    /***
+     * @param ordinal - The ordinal of a term
+     * @return The positions of the term, grouped by posting. Only the first getPositionsSize(ordinal)
+     * integers are valid.
+     */
+    public int[] getPositions(int ordinal) {
+        return positions[ordinal];
+    }
+
+    /***
+     * @param ordinal - The ordinal of a term
+     * @return The number of positions of the term
+     */
+    public int getPositionsSize(int ordinal) {
+        return positionsSizes[ordinal];
+    }
+
+    /***
+     * @param ordinal - The ordinal of a term
+     * @return The term
+     */
+    public String getTerm(int ordinal) {
+        return terms[ordinal];
+    }
+
+    /***
+     * @param ordinal - The ordinal of a term
+     * @return The posting list of the term. Only the first getPostingsSize(ordinal) integers are valid.
+     */
+    public int[] getPostings(int ordinal) {
+        return postings[ordinal];
+    }
+
+    /***
+     * @param ordinal - The ordinal of a term
+     * @return The number of integers in the posting list of the term
+     */
+    public int getPostingsSize(int ordinal) {
+        return sizes[ordinal];
+    }
+
+    /***
+     * @return The estimated number of bytes used by the table
+     */
+    public long memoryUsage() {
+        return memory;
+    }
+}
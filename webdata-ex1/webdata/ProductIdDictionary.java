@@ -1,10 +1,13 @@
 package webdata;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
 public class ProductIdDictionary extends Dictionary {
-    protected int[] locationsReviews;
-    protected String dir_index;
+    private final String dir;
+    private volatile MonotonicInts locationsReviews; // the location of each product, read at the first use
+    private PackedInts reviewProducts; // the product ordinal of each review, null for older indexes
 
     /***
      * Contains all the products of the reviews.
@@ -16,37 +19,38 @@ public class ProductIdDictionary extends Dictionary {
      * @param dir - The directory to read the inverted index from
      */
     public ProductIdDictionary(String dir) {
+        this( dir, IndexHeader.read( dir ) );
+    }
+
+    /***
+     * Reads the products dictionary of an index whose header was already read.
+     * @param dir - The directory to read the inverted index from
+     * @param header - The header of the index
+     */
+    public ProductIdDictionary(String dir, IndexHeader header) {
         K = 6;
-        dir_index = dir;
+        version = header.getVersion();
+        codec = header.getPostingCodec();
+        numbersPerPosting = 1;
         concatenation = "";
-        gamma = new Gamma();
+        this.dir = dir;
         try {
-            DataInputStream infoBlocksFile = new DataInputStream( new FileInputStream( dir +
-                    "\\infoBlocksProduct.bin" ) );
-            DataInputStream sizesFile = new DataInputStream(
-                    new FileInputStream( dir + "\\sizesProduct.bin" ) );
-            DataInputStream positionsFile = new DataInputStream( new FileInputStream( dir +
-                    "\\positionsProduct.bin" ) );
-            DataInputStream locationsFile = new DataInputStream( new FileInputStream( dir +
-                    "\\locationsLongString.bin" ) );
+            IntBuffer infoBlocksFile = mapInts( dir + "\\infoBlocksProduct.bin" );
             BufferedReader longStringFile = new BufferedReader( new FileReader( dir +
                     "\\longStringProduct.txt" ) );
-            tokensSize = infoBlocksFile.readInt();
+            tokensSize = infoBlocksFile.get();
             blocks = (int) Math.ceil( (double) tokensSize / K );
-            tokenPointer = new int[blocks];
             readInfoBlockFile( infoBlocksFile );
-            sizeToken = new int[tokensSize]; // size of each product
-            prefixSize = new int[tokensSize]; // size of each product prefix
-            readSizesFile( sizesFile );
-            postingLists = new int[tokensSize];
-            locationsReviews = new int[tokensSize];
-            readPositionsFile( positionsFile );
+            sizeToken = new byte[tokensSize]; // size of each product
+            prefixSize = new byte[tokensSize]; // size of each product prefix
+            readSizesFile( mapInts( dir + "\\sizesProduct.bin" ) );
+            readPositionsFile( mapInts( dir + "\\positionsProduct.bin" ) );
             readLongString( longStringFile );
-            readLocationsFile( locationsFile );
-            infoBlocksFile.close();
-            sizesFile.close();
-            positionsFile.close();
-            locationsFile.close();
+            postings = mapFile( dir + "\\productPosting.bin" );
+            readReviewProductsFile( dir );
+            if (header.hasPerfectHash()) {
+                hash = MinimalPerfectHash.read( dir + "\\productsHash.bin" );
+            }
             longStringFile.close();
         } catch (Exception e) {
             System.out.println( "Error - Constructor Product" );
@@ -55,19 +59,35 @@ public class ProductIdDictionary extends Dictionary {
 
 
     /***
-     * Reads the pointers in block of each product into an array field.
-     * @param locationsFile - The file in which the locations are written.
+     * The locations are read at their first use, as only getProductId needs them. Threads that use them
+     * first at the same time may each read them, which gives the same locations.
+     * @return The location in the concatenation of each product
      */
-    protected void readLocationsFile(DataInputStream locationsFile) {
-        try {
-            int i = 0;
-            while (i < tokensSize) {
-                locationsReviews[i] = locationsFile.readInt();
-                i++;
+    protected MonotonicInts getLocationsReviews() {
+        MonotonicInts locations = locationsReviews;
+        if (locations == null) {
+            try {
+                locations = MonotonicInts.read( mapInts( dir + "\\locationsLongString.bin" ), tokensSize );
+            } catch (Exception e) {
+                System.out.println( "Error - locations of products" );
+                locations = new MonotonicInts( new int[tokensSize], tokensSize );
             }
-        } catch (Exception e) {
-            System.out.println( "Error - locations of products" );
+            locationsReviews = locations;
+        }
+        return locations;
+    }
+
+    /***
+     * Maps the forward column from review ids to product ordinals, if the index has one.
+     * @param dir - The directory to read the inverted index from
+     */
+    private void readReviewProductsFile(String dir) throws IOException {
+        if (!new File( dir + "\\reviewProducts.bin" ).exists()) {
+            return;
         }
+        ByteBuffer column = mapFile( dir + "\\reviewProducts.bin" );
+        // the number of reviews comes first, then the number of bits of each ordinal
+        reviewProducts = new PackedInts( column, 64, column.getInt( 4 ) );
     }
 
     /***
@@ -76,7 +96,7 @@ public class ProductIdDictionary extends Dictionary {
      * @return The index of the given productId in the dictionary
      */
     public int searchToken(String token) {
-        return searchTokenRecursive( 0, blocks - 1, token );
+        return searchTerm( token, false );
     }
 
     /***
@@ -95,7 +115,8 @@ public class ProductIdDictionary extends Dictionary {
     public String getProductId(int reviewID) {
         String productOfReview = "";
         int product = getProductIndex( reviewID + 1 );
-        int locationProduct = locationsReviews[product];
+        MonotonicInts locations = getLocationsReviews();
+        int locationProduct = locations.get( product );
         int currProductPrefix = prefixSize[product];
         productOfReview = productOfReview.concat( concatenation.substring( locationProduct,
                 locationProduct + (10 - currProductPrefix) ) );
@@ -103,7 +124,7 @@ public class ProductIdDictionary extends Dictionary {
             product--;
             if (currProductPrefix > prefixSize[product]) {
                 int diff = currProductPrefix - prefixSize[product];
-                locationProduct = locationsReviews[product];
+                locationProduct = locations.get( product );
                 productOfReview = concatenation.substring( locationProduct,
                         locationProduct + diff ).concat( productOfReview );
                 currProductPrefix = prefixSize[product];
@@ -113,35 +134,23 @@ public class ProductIdDictionary extends Dictionary {
     }
 
     /***
-     * Finds the index of the given review id's product
+     * Finds the index of the given review id's product. It is read from the forward column of the index,
+     * or for indexes written without it, searched in the posting lists of the products.
      * @param reviewID - The reviewId which to find it's product id
      * @return The index in the dictionary of the product that connected to the given reviewId
      */
     protected int getProductIndex(int reviewID) {
-        for (int i = 0; i < tokensSize - 1; i++) {
-            int[] allReviews = readInfoTokenByPos( dir_index, "\\productPosting.bin",
-                    postingLists[i], postingLists[i + 1] );
-            int prevRev = 0;
-            for (int k = 0; k < allReviews.length; k++) {
-                allReviews[k] += prevRev;
-                prevRev = allReviews[k];
-            }
-            for (int j = 0; j < allReviews.length; j++) {
-                if (allReviews[j] == reviewID) {
-                    return i;
-                }
-            }
+        if (reviewProducts != null) {
+            return reviewProducts.get( reviewID - 1 );
         }
-        int[] allReviews = readInfoTokenByPos( dir_index, "\\productPosting.bin",
-                postingLists[tokensSize - 1], -1 );
-        int prevRev = 0;
-        for (int k = 0; k < allReviews.length; k++) {
-            allReviews[k] += prevRev;
-            prevRev = allReviews[k];
-        }
-        for (int j = 0; j < allReviews.length; j++) {
-            if (allReviews[j] == reviewID) {
-                return tokensSize - 1;
+        for (int i = 0; i < tokensSize; i++) {
+            PostingIterator reviewsOfProduct = postingIterator( i );
+            int reviewOfProduct = reviewsOfProduct.nextDoc();
+            while (reviewOfProduct < reviewID) {
+                reviewOfProduct = reviewsOfProduct.nextDoc();
+            }
+            if (reviewOfProduct == reviewID) {
+                return i;
             }
         }
         return -1;
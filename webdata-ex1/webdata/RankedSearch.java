@@ -0,0 +1,212 @@
+package webdata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/***
+ * Ranks the reviews containing any of the query tokens by their BM25 score and returns the best k of them.
+ * The search uses MaxScore dynamic pruning: each token has an upper bound on its score, computed when the
+ * index was written. Once the top k is full, the tokens whose bounds add up to no more than the score of the
+ * k-th best review cannot make a review enter it by themselves, so only the reviews of the other tokens are
+ * candidates, and the lists of the former tokens skip ahead to the candidates whose partial score can still
+ * pass. The low scoring tokens are the very common ones, so most of their postings are never decoded.
+ */
+public class RankedSearch {
+    private static final Comparator<SearchResult> WORST_FIRST = Comparator
+            .comparingDouble( SearchResult::getScore )
+            .thenComparing( Comparator.comparingInt( SearchResult::getReviewId ).reversed() );
+    private static final double BOUND_SLACK = 1 + 1e-9;
+
+    private final TokensDictionary dictionary;
+    private final ReviewsInformation reviewInfo;
+    private final int reviews;
+    private final float averageLength;
+    private volatile float[] norms; // the length normalization of each review, read at the first search
+
+    /***
+     * @param dictionary - The tokens dictionary of the index
+     * @param reviewInfo - The information about the reviews of the index
+     */
+    public RankedSearch(TokensDictionary dictionary, ReviewsInformation reviewInfo) {
+        this.dictionary = dictionary;
+        this.reviewInfo = reviewInfo;
+        reviews = dictionary.getNumOfReviews();
+        averageLength = averageLength( reviews, dictionary.getNumOfCollection() );
+    }
+
+    /***
+     * @param reviews - The number of reviews
+     * @param collection - The number of tokens in all the reviews
+     * @return The average number of tokens in a review, as the writer and the reader compute it
+     */
+    public static float averageLength(int reviews, long collection) {
+        return reviews == 0 ? 1 : Math.max( 1, (float) collection / reviews );
+    }
+
+    /***
+     * Returns the k reviews with the highest BM25 score for the query, best first (ties by review id).
+     * @param query - Free text, split into tokens the way review texts are. A repeated token counts more.
+     * @param k - The maximal number of results
+     * @return The best reviews with their scores
+     */
+    public List<SearchResult> search(String query, int k) {
+        return search( query, k, true );
+    }
+
+    /***
+     * Returns the k reviews with the highest BM25 score for the query, with or without pruning. Both give
+     * the same results; scoring every posting is only useful for comparison.
+     * @param query - Free text, split into tokens the way review texts are
+     * @param k - The maximal number of results
+     * @param prune - Whether to skip the reviews that cannot enter the top k
+     * @return The best reviews with their scores
+     */
+    public List<SearchResult> search(String query, int k, boolean prune) {
+        Term[] terms = parseQuery( query );
+        PriorityQueue<SearchResult> top = new PriorityQueue<>( Math.max( 1, k + 1 ), WORST_FIRST );
+        if (k > 0 && terms.length > 0) {
+            float[] norms = getNorms();
+            // by increasing bound, so the terms that cannot make a review enter the top k alone come first
+            Arrays.sort( terms, Comparator.comparingDouble( (Term term) -> term.maxScore ) );
+            double[] upper = new double[terms.length]; // the sum of the bounds of each term and the terms before it
+            for (int i = 0; i < terms.length; i++) {
+                upper[i] = (i == 0 ? 0 : upper[i - 1]) + terms[i].maxScore;
+                terms[i].postings.nextDoc();
+            }
+            double[] scores = new double[terms.length]; // the score of each term in the current review, by query order
+            double threshold = -1; // the score of the k-th best review, once there are k reviews
+            int essential = 0; // the terms before it cannot pass the threshold by themselves
+            while (essential < terms.length) {
+                int doc = DocIterator.NO_MORE_DOCS;
+                for (int i = essential; i < terms.length; i++) {
+                    doc = Math.min( doc, terms[i].postings.docId() );
+                }
+                if (doc == DocIterator.NO_MORE_DOCS) {
+                    break;
+                }
+                double partial = 0;
+                for (int i = essential; i < terms.length; i++) {
+                    if (terms[i].postings.docId() == doc) {
+                        scores[terms[i].order] = terms[i].score( norms[doc] );
+                        partial += scores[terms[i].order];
+                        terms[i].postings.nextDoc();
+                    }
+                }
+                boolean candidate = true;
+                for (int i = essential - 1; i >= 0 && candidate; i--) {
+                    // the slack covers the rounding of adding the scores in another order than the bounds
+                    if ((partial + upper[i]) * BOUND_SLACK <= threshold) {
+                        candidate = false;
+                    } else if (terms[i].postings.advance( doc ) == doc) {
+                        scores[terms[i].order] = terms[i].score( norms[doc] );
+                        partial += scores[terms[i].order];
+                    }
+                }
+                // summed by query order, so the score of a review does not depend on how it was reached
+                double score = 0;
+                for (int i = 0; i < scores.length; i++) {
+                    score += scores[i];
+                    scores[i] = 0;
+                }
+                if (candidate && (top.size() < k || score > threshold)) {
+                    top.add( new SearchResult( doc, score ) );
+                    if (top.size() > k) {
+                        top.poll();
+                    }
+                    if (top.size() == k && prune) {
+                        threshold = top.peek().getScore();
+                        while (essential < terms.length && upper[essential] * BOUND_SLACK <= threshold) {
+                            essential++;
+                        }
+                    }
+                }
+            }
+        }
+        List<SearchResult> results = new ArrayList<>( top );
+        results.sort( Collections.reverseOrder( WORST_FIRST ) );
+        return results;
+    }
+
+    /***
+     * Splits the query into its distinct tokens that are in the index.
+     */
+    private Term[] parseQuery(String query) {
+        List<Term> terms = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.reset( query );
+        while (tokenizer.next()) {
+            String token = tokenizer.token();
+            int repeated = tokens.indexOf( token );
+            if (repeated != -1) {
+                if (terms.get( repeated ) != null) {
+                    terms.get( repeated ).addOccurrence();
+                }
+                continue;
+            }
+            int index = dictionary.searchToken( token );
+            tokens.add( token );
+            terms.add( index >= 0 ? new Term( dictionary, index, reviews ) : null );
+        }
+        terms.removeIf( term -> term == null );
+        for (int i = 0; i < terms.size(); i++) {
+            terms.get( i ).order = i;
+        }
+        return terms.toArray( new Term[0] );
+    }
+
+    /***
+     * The norms are not locked: threads that search first at the same time may each compute them, which gives
+     * the same array, and the searches after that only read the field.
+     * @return The length normalization of each review, by review id
+     */
+    private float[] getNorms() {
+        float[] norms = this.norms;
+        if (norms == null) {
+            int[] lengths = new int[reviews];
+            reviewInfo.getReviewLengths( 1, reviews + 1, lengths );
+            norms = new float[reviews + 1];
+            for (int i = 0; i < reviews; i++) {
+                norms[i + 1] = Bm25.norm( lengths[i], averageLength );
+            }
+            this.norms = norms;
+        }
+        return norms;
+    }
+
+    /***
+     * A query token with its posting list and its score bound.
+     */
+    private static class Term {
+        private final PostingIterator postings;
+        private int order; // the position of the token in the query
+        private final double idf;
+        private final float maxTfPart;
+        private int occurrences; // the number of times the token is in the query
+        private double maxScore;
+
+        private Term(TokensDictionary dictionary, int index, int reviews) {
+            postings = dictionary.postingIterator( index );
+            idf = Bm25.idf( reviews, dictionary.getDocumentFrequency( index ) );
+            maxTfPart = dictionary.getMaxTfPart( index );
+            addOccurrence();
+        }
+
+        private void addOccurrence() {
+            occurrences++;
+            maxScore = occurrences * idf * maxTfPart;
+        }
+
+        /***
+         * @param norm - The length normalization of the current review
+         * @return The score of the token in the current review
+         */
+        private double score(float norm) {
+            return occurrences * idf * Bm25.tfPart( postings.freq(), norm );
+        }
+    }
+}
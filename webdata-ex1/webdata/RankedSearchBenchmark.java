@@ -0,0 +1,49 @@
+package webdata;
+
+import java.util.List;
+
+/***
+ * Measures the latency of ranked searches with MaxScore pruning against scoring every posting of the query tokens,
+ * for queries that mix rare and very common tokens.
+ * Usage: RankedSearchBenchmark dir [k] [iterations]
+ */
+public class RankedSearchBenchmark {
+    private static final String[] QUERIES = {"the", "the coffee", "good dog food", "this is the best tea",
+            "habanero sauce", "i love this product and the taste"};
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        String dir = args[0];
+        int k = args.length > 1 ? Integer.parseInt( args[1] ) : 10;
+        int iterations = args.length > 2 ? Integer.parseInt( args[2] ) : 200;
+        RankedSearch search = new RankedSearch( new TokensDictionary( dir ), new ReviewsInformation( dir ) );
+        for (String query : QUERIES) {
+            double pruned = 0;
+            double exhaustive = 0;
+            for (int round = 0; round < ROUNDS; round++) { // the last round is reported
+                pruned = measure( search, query, k, iterations, true );
+                exhaustive = measure( search, query, k, iterations, false );
+            }
+            if (!search.search( query, k, true ).toString().equals( search.search( query, k, false ).toString() )) {
+                throw new IllegalStateException( "The results of '" + query + "' are different" );
+            }
+            System.out.printf( "%-36s MaxScore %8.3f ms, exhaustive %8.3f ms%n", "'" + query + "'", pruned, exhaustive );
+        }
+    }
+
+    /***
+     * @return The average time of a search in milliseconds
+     */
+    private static double measure(RankedSearch search, String query, int k, int iterations, boolean prune) {
+        long start = System.nanoTime();
+        int results = 0;
+        for (int i = 0; i < iterations; i++) {
+            List<SearchResult> top = search.search( query, k, prune );
+            results += top.size();
+        }
+        if (results < 0) {
+            System.out.println( results );
+        }
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+}
@@ -0,0 +1,42 @@
+package webdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.*;
+
+import org.junit.Test;
+
+
+public class RankedSearchTest {
+
+    final String DictionaryPath = "D:\\Geffen\\Year_3\\Web_Data\\ex1\\index";
+
+    @Test
+    public void PruningShouldNotChangeTheResults() throws IOException
+    {
+        RankedSearch search = new RankedSearch(new TokensDictionary(DictionaryPath),
+                new ReviewsInformation(DictionaryPath));
+
+        for (String query : Arrays.asList("the", "good coffee", "i love this product", "the the dog")) {
+            for (int k : Arrays.asList(1, 10, 100)) {
+                assertEquals(query, search.search(query, k, false).toString(),
+                        search.search(query, k, true).toString());
+            }
+        }
+    }
+
+    @Test
+    public void SearchShouldReturnTheBestFirst() throws IOException
+    {
+        IndexReader ir = new IndexReader(DictionaryPath);
+
+        List<SearchResult> results = ir.search("good coffee", 10);
+        assertEquals(10, results.size());
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getScore() >= results.get(i).getScore());
+        }
+        assertTrue(ir.search("xyzzy", 10).isEmpty());
+    }
+}
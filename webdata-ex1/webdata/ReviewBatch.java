@@ -0,0 +1,142 @@
+package webdata;
+
+import java.util.ArrayList;
+
+/***
+ * A batch of successive reviews read from the input file. A batch is tokenized on its own (possibly by a
+ * worker thread) into a partial index, which is later merged into the index in the order of the batches,
+ * so the review ids are the same as when the reviews are tokenized one after another.
+ */
+public class ReviewBatch {
+    private final int firstReviewId; // the id of the first review in the batch
+    private final ArrayList<String> products; // the product id of each review
+    private final ArrayList<String> texts; // the review text line of each review
+    private PostingsTable dictionary; // the partial index of the tokens
+    private int[] lengths; // the number of tokens in each review
+    private int collection; // the number of tokens in the batch
+    private final Tokenizer tokenizer;
+    private final boolean withPositions; // whether the partial index keeps the positions of the tokens
+
+    /***
+     * Creates an empty batch.
+     * @param firstReviewId - The id of the first review that will be added to the batch
+     */
+    public ReviewBatch(int firstReviewId) {
+        this( firstReviewId, false );
+    }
+
+    /***
+     * Creates an empty batch.
+     * @param firstReviewId - The id of the first review that will be added to the batch
+     * @param withPositions - Whether the partial index keeps the positions of the tokens in the reviews
+     */
+    public ReviewBatch(int firstReviewId, boolean withPositions) {
+        this.firstReviewId = firstReviewId;
+        this.withPositions = withPositions;
+        products = new ArrayList<>();
+        texts = new ArrayList<>();
+        tokenizer = new Tokenizer();
+    }
+
+    /***
+     * Adds a new review to the batch.
+     * @param product - The product id of the review
+     */
+    public void addReview(String product) {
+        products.add( product );
+        texts.add( null );
+    }
+
+    /***
+     * Sets the text of the last review added to the batch.
+     * @param line - The review text line
+     */
+    public void setText(String line) {
+        texts.set( texts.size() - 1, line );
+    }
+
+    /***
+     * Tokenizes all the reviews of the batch into a partial index.
+     * @return This batch
+     */
+    public ReviewBatch tokenize() {
+        dictionary = new PostingsTable( true, withPositions );
+        lengths = new int[texts.size()];
+        collection = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            if (texts.get( i ) != null) {
+                lengths[i] = writeTokens( texts.get( i ), firstReviewId + i );
+                collection += lengths[i];
+            }
+        }
+        return this;
+    }
+
+    /***
+     * Writes into the partial index data about a given review text
+     * @param line - The current review text
+     * @param reviewId - The number of The current review
+     * @return - The length of the current review text
+     */
+    private int writeTokens(String line, int reviewId) {
+        int counterWords = 0;
+        tokenizer.reset( line );
+        while (tokenizer.next()) {
+            dictionary.add( tokenizer.buffer(), tokenizer.length(), reviewId, counterWords );
+            counterWords++;
+        }
+        return counterWords;
+    }
+
+    /***
+     * @return The number of reviews in the batch
+     */
+    public int size() {
+        return products.size();
+    }
+
+    /***
+     * @return The id of the first review in the batch
+     */
+    public int getFirstReviewId() {
+        return firstReviewId;
+    }
+
+    /***
+     * @param index - Index of a review in the batch
+     * @return The product id of the review
+     */
+    public String getProduct(int index) {
+        return products.get( index );
+    }
+
+    /***
+     * @param index - Index of a review in the batch
+     * @return Whether the review had a text line
+     */
+    public boolean hasText(int index) {
+        return texts.get( index ) != null;
+    }
+
+    /***
+     * @param index - Index of a review in the batch
+     * @return The number of tokens in the review (available after tokenize)
+     */
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    /***
+     * @return The partial index of the tokens of the batch (available after tokenize)
+     */
+    public PostingsTable getDictionary() {
+        return dictionary;
+    }
+
+    /***
+     * @return The number of tokens in the batch (available after tokenize)
+     */
+    public int getCollection() {
+        return collection;
+    }
+}
@@ -1,76 +1,92 @@
 package webdata;
 
-import java.io.*;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 /***
  * Returns general information about specific review from the written files.
+ * The scores, helpfulness and review lengths files are columns of fixed size records by review id, so they
+ * are mapped once and every value is read at its offset in the mapped buffer. Reading a value allocates
+ * nothing and makes no system call, and can be done by several threads at once.
  */
 public class ReviewsInformation {
-    private String dir;
+    private static final int HELPFULNESS_RECORD = 4; // a 2 bytes numerator and a 2 bytes denominator
+
+    private ByteBuffer scores; // one byte per review
+    private ByteBuffer helpfulness;
+    private ByteBuffer reviewLengths; // one int per review
 
     /**
-     * Returns the score for a given review
-     * Returns -1 if there is no review with the given identifier
+     * Maps the review information files of the index in the given directory
      */
     public ReviewsInformation(String directory) {
-        dir = directory;
-    }
-
-    public int getReviewScore(int reviewId) {
-        int score = 0;
         try {
-            RandomAccessFile scores = new RandomAccessFile( dir + "\\scores.bin", "r" );
-            scores.skipBytes( reviewId - 1 );
-            score = scores.read();
-            scores.seek( 0 );
-            scores.close();
+            scores = Dictionary.mapFile( directory + "\\scores.bin" );
+            helpfulness = Dictionary.mapFile( directory + "\\helpfulness.bin" );
+            reviewLengths = Dictionary.mapFile( directory + "\\reviewLengths.bin" );
         } catch (Exception e) {
-            System.out.println( "Error in score" );
+            System.out.println( "Error in reviews information" );
         }
-        return score;
+    }
+
+    /**
+     * Returns the score for a given review
+     */
+    public int getReviewScore(int reviewId) {
+        return scores.get( reviewId - 1 ) & 0xFF;
     }
 
     /**
      * Returns the numerator or denominator (according to isNumerator flag) for the helpfulness of a given
-     * review Returns -1 if there is no review with the given identifier
+     * review
      */
     public int getReviewHelpfulnessNumeratorDenominator(int reviewId, boolean isNumerator) {
-        byte[] numerator = new byte[2];
-        try {
-            RandomAccessFile helpfulness = new RandomAccessFile(
-                    dir + "\\helpfulness.bin", "r" );
-            if (isNumerator) {
-                helpfulness.skipBytes( (reviewId - 1) * 4 );
-            } else {
-                helpfulness.skipBytes( ((reviewId - 1) * 4) + 2 );
-            }
-            numerator[0] = helpfulness.readByte();
-            numerator[1] = helpfulness.readByte();
-            helpfulness.seek( 0 );
-            helpfulness.close();
-        } catch (Exception e) {
-            System.out.println( "Error in helpfulness" );
-        }
-        return new BigInteger( numerator ).intValue();
+        return helpfulness.getShort( (reviewId - 1) * HELPFULNESS_RECORD + (isNumerator ? 0 : 2) );
     }
 
     /**
      * Returns the number of tokens in a given review
-     * Returns -1 if there is no review with the given identifier
      */
     public int getReviewLength(int reviewId) {
-        int length = 0;
-        try {
-            RandomAccessFile reviewLengths = new RandomAccessFile( dir + "\\reviewLengths.bin",
-                    "r" );
-            reviewLengths.skipBytes( (reviewId - 1) * 4 );
-            length = reviewLengths.readInt();
-            reviewLengths.seek( 0 );
-            reviewLengths.close();
-        } catch (Exception e) {
-            System.out.println( "Error in reviewLengths" );
+        return reviewLengths.getInt( (reviewId - 1) * 4 );
+    }
+
+    /**
+     * Fills the given array with the scores of the reviews from the first id up to the last id (excluded)
+     * @param from - The id of the review to put first in the array
+     * @param to - The id after the last review
+     * @param scores - The array to fill, at least to - from long
+     */
+    public void getReviewScores(int from, int to, int[] scores) {
+        for (int reviewId = from; reviewId < to; reviewId++) {
+            scores[reviewId - from] = this.scores.get( reviewId - 1 ) & 0xFF;
+        }
+    }
+
+    /**
+     * Fills the given array with the numerators or denominators (according to isNumerator flag) of the
+     * helpfulness of the reviews from the first id up to the last id (excluded)
+     * @param from - The id of the review to put first in the array
+     * @param to - The id after the last review
+     * @param isNumerator - Whether to read the numerators or the denominators
+     * @param values - The array to fill, at least to - from long
+     */
+    public void getReviewHelpfulness(int from, int to, boolean isNumerator, int[] values) {
+        int offset = (from - 1) * HELPFULNESS_RECORD + (isNumerator ? 0 : 2);
+        for (int i = 0; i < to - from; i++, offset += HELPFULNESS_RECORD) {
+            values[i] = helpfulness.getShort( offset );
         }
-        return length;
+    }
+
+    /**
+     * Fills the given array with the number of tokens of the reviews from the first id up to the last id
+     * (excluded)
+     * @param from - The id of the review to put first in the array
+     * @param to - The id after the last review
+     * @param lengths - The array to fill, at least to - from long
+     */
+    public void getReviewLengths(int from, int to, int[] lengths) {
+        ByteBuffer range = reviewLengths.duplicate();
+        range.position( (from - 1) * 4 );
+        range.asIntBuffer().get( lengths, 0, to - from );
     }
 }
@@ -0,0 +1,33 @@
+package webdata;
+
+/***
+ * A review returned by a ranked search, with its score.
+ */
+public class SearchResult {
+    private final int reviewId;
+    private final double score;
+
+    public SearchResult(int reviewId, double score) {
+        this.reviewId = reviewId;
+        this.score = score;
+    }
+
+    /***
+     * @return The id of the review
+     */
+    public int getReviewId() {
+        return reviewId;
+    }
+
+    /***
+     * @return The BM25 score of the review for the query
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return reviewId + ":" + score;
+    }
+}
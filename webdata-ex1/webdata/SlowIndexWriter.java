@@ -2,35 +2,161 @@ package webdata;
 
 import java.io.*;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SlowIndexWriter {
-    private SortedMap<String, LinkedHashMap<Integer, Integer>> dictionary; // the dictionary of the tokens
+    private PostingsTable dictionary; // the dictionary of the tokens
     private int collection;
     private int reviews;
     private final int K_words = 24;
     private final int K_products = 6;
 
-    private DataOutputStream frequenciesW; // frequencies file
-    private DataOutputStream postingW; // posting lists file
+    private BitOutputStream frequenciesW; // frequencies file
+    private BitOutputStream postingW; // posting lists file
 
-    private FileWriter longStringW; // long string file
+    private Writer longStringW; // long string file
     private DataOutputStream positionsW; // hold the position of posting lists and frequencies
     private DataOutputStream sizesW;
     private DataOutputStream infoBlocksW;
+    private BitOutputStream wordPositionsW; // the positions of the tokens in the reviews
+    private DataOutputStream wordPositionsIndexW; // the position of the positions of each token
 
-    private DataOutputStream productPostingW; // posting lists file
+    private BitOutputStream productPostingW; // posting lists file
 
-    private TreeMap<String, ArrayList<Integer>> productDict; // the dictionary of the productIds
-    private FileWriter productLongStringW;
+    private PostingsTable productDict; // the dictionary of the productIds
+    private Writer productLongStringW;
     private DataOutputStream productPositionsW; // hold the position of posting lists and frequencies
     private DataOutputStream productSizesW;
     private DataOutputStream productInfoBlocksW;
     private DataOutputStream locationsLongStringW; // long string file
+    private int[] documentFrequencies; // the number of reviews of each token written so far, by index
     private Gamma gamma; // an encoder object
+    private int formatVersion = IndexHeader.CURRENT_VERSION; // the on disk format of the index
+    private boolean positional; // whether to write the positions of the tokens
+    private boolean withPositions; // whether the index being written has positions
+    private boolean perfectHash; // whether to write perfect hashes of the dictionaries
+    private boolean termTrie; // whether to write a trie of the tokens
+    private PostingCodec postingCodec = new GammaCodec(); // the codec of the posting lists
+    private PostingCodec codec; // the codec of the posting lists of the index being written
+    // the posting list being written
+    private BitOutputStream listW; // the posting lists file the list is written into
+    private int postingsAdded; // the postings of the list added so far
+    private int prevReviewId;
+    private int[] blockGaps; // the gaps of the postings of the current block
+    private boolean listWithFrequencies; // whether the postings hold frequencies, which products do not
+    private int[] blockFreqs; // the frequencies of the postings of the current block
+    private int blockSize;
+    private SpillBuffer blocks; // the encoded blocks of the list, written after its skip entries
+    private SpillBuffer skips; // the skip entries of the list
+    private int listFrequency; // the total frequency of the token of the list
+    private SpillBuffer positionsBits; // the gamma codes of the positions of the token
+    private SpillBuffer positionSkips; // the skip entries of the positions of the token
 
+    private final long memoryBudget; // max estimated bytes of the in memory index before flushing a run
+    private final int threads; // number of threads that tokenize the reviews
+    private ExecutorService executor; // tokenizes the batches when there is more than one thread
+    private ArrayDeque<Future<ReviewBatch>> pending; // batches submitted and not merged yet, by order
+    private DataOutputStream reviewLengthsW;
+    private int lengthsWritten;
+    private int runs; // number of runs flushed to disk
+    private String dir;
+
+    // front coding state of the tokens dictionary files
+    private int tokensWritten;
+    private int tokensConcatenationLength;
+    private String prevToken;
+
+    // front coding state of the products dictionary files
+    private int productsWritten;
+    private int productsConcatenationLength;
+    private String prevProduct;
+
+    private static final int BATCH_SIZE = 1000; // number of reviews tokenized together
+    private static final int SPILL_BYTES = 1 << 20; // the memory of each scratch of the list being written
+
+    /***
+     * Creates a writer that keeps the whole index in memory before writing it.
+     */
+    public SlowIndexWriter() {
+        this( Long.MAX_VALUE, 1 );
+    }
+
+    /***
+     * Creates a writer that builds the index in bounded memory. Whenever the estimated size of the in
+     * memory index reaches the given budget, it is flushed to disk as a sorted run, and at the end all
+     * the runs are merged into the dictionary and posting lists files. The runs are merged one posting at a
+     * time, and the parts of a list that are written before they are copied to the index spill to temporary
+     * files, so the memory of the merge does not depend on the length of the posting lists either.
+     * @param memoryBudget - The estimated number of bytes the in memory index may use
+     */
+    public SlowIndexWriter(long memoryBudget) {
+        this( memoryBudget, 1 );
+    }
+
+    /***
+     * Creates a writer that builds the index in bounded memory using several threads. The input is read
+     * in batches of reviews, the batches are tokenized in parallel by the given number of threads, and
+     * then merged into the index by their order, so the review ids do not depend on the number of threads.
+     * @param memoryBudget - The estimated number of bytes the in memory index may use
+     * @param threads - The number of threads that tokenize the reviews
+     */
+    public SlowIndexWriter(long memoryBudget, int threads) {
+        this.memoryBudget = memoryBudget;
+        this.threads = Math.max( 1, threads );
+    }
+
+    /***
+     * Sets the on disk format of the indexes written by this writer.
+     * @param formatVersion - One of the versions in IndexHeader
+     */
+    public void setFormatVersion(int formatVersion) {
+        this.formatVersion = formatVersion;
+    }
+
+    /***
+     * Sets whether the indexes written by this writer hold the positions of the tokens in the reviews, which
+     * phrase and proximity queries need. Positions are only written from the skips version of the format.
+     * @param positional - Whether to write the positions
+     */
+    public void setPositional(boolean positional) {
+        this.positional = positional;
+    }
+
+    /***
+     * Sets whether the indexes written by this writer hold minimal perfect hashes of the tokens and products
+     * dictionaries, which find a term in constant time instead of by a binary search on the blocks. The
+     * hashes are only written from the bit packed version of the format, which has a header to record them.
+     * @param perfectHash - Whether to write the hashes
+     */
+    public void setPerfectHash(boolean perfectHash) {
+        this.perfectHash = perfectHash;
+    }
+
+    /***
+     * Sets whether the indexes written by this writer hold a compacted trie of the tokens, which the prefix
+     * and wildcard expansions of IndexReader need. The trie is only written from the bit packed version of
+     * the format, which has a header to record it.
+     * @param termTrie - Whether to write the trie
+     */
+    public void setTermTrie(boolean termTrie) {
+        this.termTrie = termTrie;
+    }
+
+    /***
+     * Sets the codec of the posting lists of the indexes written by this writer. The codec is only used from
+     * the bit packed version of the format, which has a header to record it; the default is gamma codes.
+     * @param postingCodec - The codec of the posting lists
+     */
+    public void setPostingCodec(PostingCodec postingCodec) {
+        this.postingCodec = postingCodec;
+    }
 
     /**
      * Given product review data, creates an on disk index
@@ -42,8 +168,22 @@ public class SlowIndexWriter {
         gamma = new Gamma();
         reviews = 0;
         collection = 0;
-        dictionary = new TreeMap<>();
-        productDict = new TreeMap<>();
+        runs = 0;
+        this.dir = dir;
+        tokensWritten = 0;
+        documentFrequencies = new int[1024];
+        tokensConcatenationLength = 0;
+        prevToken = "";
+        productsWritten = 0;
+        productsConcatenationLength = 0;
+        prevProduct = "";
+        withPositions = positional && formatVersion >= IndexHeader.SKIPS_VERSION;
+        boolean withHash = perfectHash && formatVersion >= IndexHeader.BIT_PACKED_VERSION;
+        boolean withTrie = termTrie && formatVersion >= IndexHeader.BIT_PACKED_VERSION;
+        codec = formatVersion >= IndexHeader.BIT_PACKED_VERSION ? postingCodec : new GammaCodec();
+        dictionary = new PostingsTable( true, withPositions );
+        productDict = new PostingsTable( false );
+        lengthsWritten = 0;
         try {
             boolean created;
             int reviewId = 0;
@@ -65,8 +205,13 @@ public class SlowIndexWriter {
                     "\\scores.bin" ) );
             DataOutputStream helpfulnessW = new DataOutputStream( new FileOutputStream( dir +
                     "\\helpfulness.bin" ) );
-            DataOutputStream reviewLengthsW = new DataOutputStream( new FileOutputStream( dir +
-                    "\\reviewLengths.bin" ) );
+            reviewLengthsW = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( dir +
+                    "\\reviewLengths.bin" ) ) );
+            if (threads > 1) {
+                executor = Executors.newFixedThreadPool( threads );
+            }
+            pending = new ArrayDeque<>();
+            ReviewBatch batch = new ReviewBatch( 1, withPositions );
             // Read the input file
             BufferedReader reader = new BufferedReader( new FileReader( inputFile ) );
             String line = reader.readLine();
@@ -74,14 +219,12 @@ public class SlowIndexWriter {
                 if (line.contains( "product/productId:" )) {
                     reviews++;
                     reviewId++;
-                    String goodProduct = line.split( "\\s+" )[1];
-                    if (productDict.containsKey( goodProduct )) {
-                        productDict.get( goodProduct ).add( reviewId );
-                    } else {
-                        ArrayList<Integer> reviewsOfOneProduct = new ArrayList<>();
-                        reviewsOfOneProduct.add( reviewId );
-                        productDict.put( goodProduct, reviewsOfOneProduct );
+                    if (batch.size() == BATCH_SIZE) {
+                        submitBatch( batch );
+                        batch = new ReviewBatch( reviewId, withPositions );
                     }
+                    String goodProduct = line.split( "\\s+" )[1];
+                    batch.addReview( goodProduct );
                 } else if (line.contains( "review/helpfulness:" )) {
                     String numeric = line.split( "\\s+" )[1];
                     String[] numerator_denominator = numeric.split( "/" );
@@ -93,31 +236,173 @@ public class SlowIndexWriter {
                     String score = line.split( "\\s+" )[1];
                     scoresW.writeByte( score.charAt( 0 ) - '0' );
                 } else if (line.contains( "review/text:" )) {
-                    int size = this.writeTokens( line, reviewId );
-                    reviewLengthsW.writeInt( size );
+                    batch.setText( line );
                 }
                 line = reader.readLine();
             }
             reader.close();
+            submitBatch( batch );
+            while (!pending.isEmpty()) {
+                mergeBatch( pending.poll().get() );
+            }
             scoresW.close();
             helpfulnessW.close();
             reviewLengthsW.close();
+            if (runs > 0) {
+                flushRun();
+            }
             openArraysFiles( dir );
             constructorDic( dir );
-            buildDicFile();
+            if (runs > 0) {
+                mergeTokenRuns();
+            } else {
+                buildDicFile();
+            }
+            closeDicFile();
             frequenciesW.close();
             postingW.close();
             positionsW.close();
             sizesW.close();
-            infoBlocksW.close();
+            if (withPositions) {
+                wordPositionsW.close();
+                wordPositionsIndexW.close();
+            }
+            writeInfoBlocksHeader( dir + "\\infoBlocks.bin", tokensWritten, reviews, collection );
+            writeMaxScores();
+            writeDocumentFrequencies();
             openArraysProductFiles( dir );
-            buildDicProductFile();
+            if (runs > 0) {
+                mergeProductRuns();
+            } else {
+                buildDicProductFile();
+            }
+            closeDicProductFile();
             productPostingW.close();
             productPositionsW.close();
             productSizesW.close();
+            writeInfoBlocksHeader( dir + "\\infoBlocksProduct.bin", productsWritten );
+            writeReviewProducts();
+            if (withHash) {
+                // the terms are read back from the dictionary files instead of being kept in memory
+                MinimalPerfectHash.write( dir + "\\tokensHash.bin", new FrontCodedTerms( dir + "\\sizes.bin",
+                        dir + "\\longString.txt", tokensWritten, K_words ) );
+                MinimalPerfectHash.write( dir + "\\productsHash.bin", new FrontCodedTerms( dir +
+                        "\\sizesProduct.bin", dir + "\\longStringProduct.txt", productsWritten, K_products ) );
+            }
+            if (withTrie) {
+                TermTrie.write( dir + "\\tokensTrie.bin", new FrontCodedTerms( dir + "\\sizes.bin",
+                        dir + "\\longString.txt", tokensWritten, K_words ) );
+            }
+            int flags = (withPositions ? IndexHeader.POSITIONS_FLAG : 0) |
+                    (withHash ? IndexHeader.PERFECT_HASH_FLAG : 0) | (withTrie ? IndexHeader.TERM_TRIE_FLAG : 0);
+            new IndexHeader( formatVersion, flags, codec.id() ).write( dir );
+            removeRuns();
+            deleteScratch();
+            documentFrequencies = null;
         } catch (Exception e) {
+            // the index is not complete, so its header is not written, and its runs are not needed anymore
+            removeRuns();
+            deleteScratch();
             System.out.println( "Error in slowWrite!!!" );
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
+    /***
+     * Tokenizes the given batch, by a worker thread if the writer uses more than one thread. The batches
+     * are merged into the index in the order they were submitted.
+     * @param batch - The batch to tokenize
+     */
+    private void submitBatch(ReviewBatch batch) throws Exception {
+        if (batch.size() == 0) {
+            return;
+        }
+        if (executor == null) {
+            mergeBatch( batch.tokenize() );
+            return;
+        }
+        pending.add( executor.submit( batch::tokenize ) );
+        // keep the workers busy without reading the whole input ahead of the merge
+        while (pending.size() > 2 * threads) {
+            mergeBatch( pending.poll().get() );
+        }
+    }
+
+    /***
+     * Merges a tokenized batch into the in memory index and writes the lengths of its reviews.
+     * @param batch - The tokenized batch
+     */
+    private void mergeBatch(ReviewBatch batch) throws IOException {
+        if (dictionary.memoryUsage() + productDict.memoryUsage() >= memoryBudget) {
+            flushRun();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            productDict.add( batch.getProduct( i ), batch.getFirstReviewId() + i );
+            if (batch.hasText( i )) {
+                reviewLengthsW.writeInt( batch.getLength( i ) );
+                lengthsWritten++;
+            }
         }
+        dictionary.addAll( batch.getDictionary() );
+        collection += batch.getCollection();
+    }
+
+    /***
+     * @param bytesPerReview - The bytes a pass over the reviews keeps for each review
+     * @return The number of reviews a pass over the reviews may keep in memory at a time, so the memory of
+     * the pass is bounded by the memory budget and not by the number of reviews
+     */
+    private int reviewsWindow(int bytesPerReview) {
+        return (int) Math.max( 1, Math.min( reviews, memoryBudget / bytesPerReview ) );
+    }
+
+    /***
+     * Writes the upper bound of the BM25 term frequency part of each token, once the average review length
+     * is known. The norms of the reviews are computed from the review lengths file a window of reviews at a
+     * time, and each window reads the postings of its reviews from the posting lists written, continuing each
+     * list where the previous window left it.
+     */
+    private void writeMaxScores() throws IOException {
+        float averageLength = RankedSearch.averageLength( reviews, collection );
+        float[] maxTfParts = new float[tokensWritten];
+        ByteBuffer postingLists = Dictionary.mapFile( dir + "\\postingLists.bin" );
+        IntBuffer positions = Dictionary.mapInts( dir + "\\positions.bin" );
+        DataInputStream lengthsR = new DataInputStream( new BufferedInputStream( new FileInputStream( dir +
+                "\\reviewLengths.bin" ) ) );
+        PostingCursors cursors = new PostingCursors( postingLists, positions, tokensWritten, formatVersion, codec,
+                true );
+        float[] norms = new float[reviewsWindow( Float.BYTES )];
+        for (int from = 1; from <= reviews; from += norms.length) {
+            int to = Math.min( reviews + 1, from + norms.length );
+            for (int reviewId = from; reviewId < to; reviewId++) {
+                norms[reviewId - from] = Bm25.norm( reviewId <= lengthsWritten ? lengthsR.readInt() : 0,
+                        averageLength );
+            }
+            for (int token = 0; token < tokensWritten; token++) {
+                PostingIterator postings = cursors.open( token, from, to );
+                if (postings == null) {
+                    continue;
+                }
+                for (int reviewId = postings.docId(); reviewId < to; reviewId = postings.nextDoc()) {
+                    maxTfParts[token] = Math.max( maxTfParts[token], Bm25.tfPart( postings.freq(),
+                            norms[reviewId - from] ) );
+                }
+                cursors.close( token, postings );
+            }
+        }
+        lengthsR.close();
+        File maxScoresFile = new File( dir + "\\maxScores.bin" );
+        boolean created = maxScoresFile.createNewFile();
+        DataOutputStream maxScoresW = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( dir +
+                "\\maxScores.bin" ) ) );
+        for (float maxTfPart : maxTfParts) {
+            maxScoresW.writeFloat( maxTfPart );
+        }
+        maxScoresW.close();
     }
 
     /***
@@ -129,8 +414,8 @@ public class SlowIndexWriter {
             File productLongString = new File( dir +
                     "\\longStringProduct.txt" );
             boolean created = productLongString.createNewFile();
-            productLongStringW = new FileWriter( dir +
-                    "\\longStringProduct.txt" );
+            productLongStringW = new BufferedWriter( new FileWriter( dir +
+                    "\\longStringProduct.txt" ) );
 
             File productPositions = new File( dir +
                     "\\positionsProduct.bin" );
@@ -146,8 +431,10 @@ public class SlowIndexWriter {
 
             File productInfoBlocks = new File( dir + "\\infoBlocksProduct.bin" );
             created = productInfoBlocks.createNewFile();
-            productInfoBlocksW = new DataOutputStream( new FileOutputStream( dir +
-                    "\\infoBlocksProduct.bin" ) );
+            productInfoBlocksW = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(
+                    dir + "\\infoBlocksProduct.bin" ) ) );
+            // the header is rewritten when the number of products is known
+            productInfoBlocksW.writeInt( 0 );
 
             File locationsLongString = new File( dir + "\\locationsLongString.bin" );
             created = locationsLongString.createNewFile();
@@ -167,17 +454,17 @@ public class SlowIndexWriter {
         try {
             File frequenciesFile = new File( dir + "\\frequencies.bin" );
             boolean created = frequenciesFile.createNewFile();
-            frequenciesW = new DataOutputStream( new FileOutputStream( dir +
+            frequenciesW = new BitOutputStream( new FileOutputStream( dir +
                     "\\frequencies.bin" ) );
 
             File postingFile = new File( dir + "\\postingLists.bin" );
             created = postingFile.createNewFile();
-            postingW = new DataOutputStream( new FileOutputStream( dir +
+            postingW = new BitOutputStream( new FileOutputStream( dir +
                     "\\postingLists.bin" ) );
 
             File productPostingFile = new File( dir + "\\productPosting.bin" );
             created = productPostingFile.createNewFile();
-            productPostingW = new DataOutputStream( new FileOutputStream( dir +
+            productPostingW = new BitOutputStream( new FileOutputStream( dir +
                     "\\productPosting.bin" ) );
         } catch (Exception e) {
             System.out.println( "Error creating file in dictionary!!!" );
@@ -192,7 +479,7 @@ public class SlowIndexWriter {
         try {
             File longStringFile = new File( dir + "\\longString.txt" );
             boolean created = longStringFile.createNewFile();
-            longStringW = new FileWriter( dir + "\\longString.txt" );
+            longStringW = new BufferedWriter( new FileWriter( dir + "\\longString.txt" ) );
 
             File positionsFile = new File( dir + "\\positions.bin" );
             created = positionsFile.createNewFile();
@@ -204,11 +491,22 @@ public class SlowIndexWriter {
                     "\\sizes.bin" ) );
             File infoBlocksFile = new File( dir + "\\infoBlocks.bin" );
             created = infoBlocksFile.createNewFile();
-            infoBlocksW = new DataOutputStream( new FileOutputStream( dir +
-                    "\\infoBlocks.bin" ) );
-            infoBlocksW.writeInt( dictionary.size() );
-            infoBlocksW.writeInt( reviews );
-            infoBlocksW.writeInt( collection );
+            infoBlocksW = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( dir +
+                    "\\infoBlocks.bin" ) ) );
+            if (withPositions) {
+                File wordPositionsFile = new File( dir + "\\wordPositions.bin" );
+                created = wordPositionsFile.createNewFile();
+                wordPositionsW = new BitOutputStream( new FileOutputStream( dir +
+                        "\\wordPositions.bin" ) );
+                File wordPositionsIndexFile = new File( dir + "\\wordPositionsIndex.bin" );
+                created = wordPositionsIndexFile.createNewFile();
+                wordPositionsIndexW = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( dir +
+                        "\\wordPositionsIndex.bin" ) ) );
+            }
+            // the header is rewritten when the number of tokens is known
+            infoBlocksW.writeInt( 0 );
+            infoBlocksW.writeInt( 0 );
+            infoBlocksW.writeInt( 0 );
         } catch (Exception e) {
             System.out.println( "Error creating file in dictionary!!!" );
         }
@@ -247,43 +545,6 @@ public class SlowIndexWriter {
         }
     }
 
-    /***
-     * Writes into the dictionary files data about a given review text
-     * @param line - The current review text
-     * @param reviewId - The number of The current review
-     * @return - The length of the current review text
-     */
-    private int writeTokens(String line, int reviewId) {
-        line = line.toLowerCase();
-        int counterWords = 0;
-        String[] tokens = line.split( "\\s+" );
-
-        for (String token : tokens) {
-            if (token.equals( "review/text:" )) {
-                continue;
-            }
-            String[] onlyWords = token.split( "[^a-z0-9]+" );
-            for (String word : onlyWords) {
-                if (word.equals( "" )) {
-                    continue;
-                }
-                if (!dictionary.containsKey( word )) {
-                    LinkedHashMap<Integer, Integer> fields = new LinkedHashMap<>();
-                    fields.put( reviewId, 0 );
-                    dictionary.put( word, fields );
-                } else if (!dictionary.get( word ).containsKey( reviewId )) {
-                    dictionary.get( word ).put( reviewId, 0 );
-                }
-                int freq = dictionary.get( word ).get( reviewId ) + 1;
-                dictionary.get( word ).put( reviewId, freq );
-                collection++;
-                counterWords++;
-            }
-        }
-        return counterWords;
-
-    }
-
     /***
      * Calculates the mutual prefix of two given strings
      * @param prevToken - First string
@@ -301,47 +562,256 @@ public class SlowIndexWriter {
         return sizePrefix;
     }
 
+    /***
+     * Flushes the in memory index into a new sorted run on disk and clears it. If the run cannot be written,
+     * its partial files are deleted and the in memory index is kept.
+     */
+    private void flushRun() throws IOException {
+        try {
+            IndexRun.write( dir + "\\run" + runs + ".bin", dictionary );
+            IndexRun.write( dir + "\\runProduct" + runs + ".bin", productDict );
+        } catch (IOException e) {
+            new File( dir + "\\run" + runs + ".bin" ).delete();
+            new File( dir + "\\runProduct" + runs + ".bin" ).delete();
+            throw e;
+        }
+        runs++;
+        dictionary = new PostingsTable( true, withPositions );
+        productDict = new PostingsTable( false );
+    }
+
+    /***
+     * Deletes all the runs that were flushed while building the index.
+     */
+    private void removeRuns() {
+        for (int i = 0; i < runs; i++) {
+            new File( dir + "\\run" + i + ".bin" ).delete();
+            new File( dir + "\\runProduct" + i + ".bin" ).delete();
+        }
+    }
+
+    /***
+     * Merges the sorted runs of the tokens and writes each token and its posting list into the
+     * corresponding files. The postings of a token are read from the runs one at a time and written as they
+     * are read, so the merge does not hold the posting list of a token.
+     */
+    private void mergeTokenRuns() throws IOException {
+        PriorityQueue<IndexRun> queue = openRuns( "\\run" );
+        ArrayList<IndexRun> runsOfTerm = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            int count = pollTerm( queue, runsOfTerm );
+            startToken( runsOfTerm.get( 0 ).getTerm(), count );
+            // the runs of a token are polled by the order they were flushed, so ids stay sorted
+            for (IndexRun run : runsOfTerm) {
+                while (run.nextPosting()) {
+                    addTokenPosting( run.getReviewId(), run.getFrequency(), run.getPositions(), 0 );
+                }
+            }
+            endToken();
+            requeue( queue, runsOfTerm );
+        }
+    }
+
+    /***
+     * Merges the sorted runs of the products and writes each product and its posting list into the
+     * corresponding files, one posting at a time.
+     */
+    private void mergeProductRuns() throws IOException {
+        PriorityQueue<IndexRun> queue = openRuns( "\\runProduct" );
+        ArrayList<IndexRun> runsOfTerm = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            int count = pollTerm( queue, runsOfTerm );
+            startProduct( runsOfTerm.get( 0 ).getTerm(), count );
+            for (IndexRun run : runsOfTerm) {
+                while (run.nextPosting()) {
+                    addPosting( run.getReviewId(), 0 );
+                }
+            }
+            endProduct();
+            requeue( queue, runsOfTerm );
+        }
+    }
+
+    /***
+     * Polls all the runs whose current term is the smallest one, by the order they were flushed.
+     * @param queue - The runs, ordered by their current term
+     * @param runsOfTerm - The list to fill with the polled runs
+     * @return The number of postings of the term in all the polled runs
+     */
+    private int pollTerm(PriorityQueue<IndexRun> queue, ArrayList<IndexRun> runsOfTerm) {
+        runsOfTerm.clear();
+        String term = queue.peek().getTerm();
+        int count = 0;
+        while (!queue.isEmpty() && queue.peek().getTerm().equals( term )) {
+            IndexRun run = queue.poll();
+            count += run.getCount();
+            runsOfTerm.add( run );
+        }
+        return count;
+    }
+
+    /***
+     * Moves the polled runs to their next term and returns them to the queue, or closes the runs that ended.
+     */
+    private void requeue(PriorityQueue<IndexRun> queue, ArrayList<IndexRun> runsOfTerm) throws IOException {
+        for (IndexRun run : runsOfTerm) {
+            if (run.next()) {
+                queue.add( run );
+            } else {
+                run.close();
+            }
+        }
+    }
+
+    /***
+     * Opens all the runs with the given name and positions each of them on its first term.
+     * @param name - The name of the runs files
+     * @return A queue of the non empty runs, ordered by their current term
+     */
+    private PriorityQueue<IndexRun> openRuns(String name) throws IOException {
+        PriorityQueue<IndexRun> queue = new PriorityQueue<>( Math.max( 1, runs ) );
+        for (int i = 0; i < runs; i++) {
+            IndexRun run = new IndexRun( dir + name + i + ".bin", i );
+            if (run.next()) {
+                queue.add( run );
+            } else {
+                run.close();
+            }
+        }
+        return queue;
+    }
+
+    /***
+     * Rewrites the header of an info blocks file once the sizes are known.
+     * @param fileName - The info blocks file
+     * @param header - The numbers to write at the beginning of the file
+     */
+    private void writeInfoBlocksHeader(String fileName, int... header) throws IOException {
+        RandomAccessFile file = new RandomAccessFile( fileName, "rw" );
+        for (int number : header) {
+            file.writeInt( number );
+        }
+        file.close();
+    }
+
     /***
      * Writes all the products id and their data into the corresponding files.
      */
     private void buildDicProductFile() {
-        String concatenation = "";
-        int posAccordingToBlocks = 0; // index to productID
-        int positionId = 0;
-        String prevProduct = "";
         try {
-            int positions = 0;
-            productInfoBlocksW.writeInt( productDict.size() );
-            for (String product : productDict.keySet()) { // for each product
-                productSizesW.writeInt( product.length() );
-                // not new block
-                if (posAccordingToBlocks % K_products != 0) {
-                    int curPrefixSize = findPrefixSize( prevProduct, product );
-                    productSizesW.writeInt( curPrefixSize );
-                    concatenation = concatenation.concat( product.substring( curPrefixSize ) );
-                    locationsLongStringW.writeInt( positions );
-                    positions += product.substring( curPrefixSize ).length();
-                } else {
-                    productSizesW.writeInt( 0 );
-                    productInfoBlocksW.writeInt( concatenation.length() );
-                    concatenation = concatenation.concat( product );
-                    locationsLongStringW.writeInt( positions );
-                    positions += product.length();
+            for (int product : productDict.sortedOrdinals()) { // for each product
+                int[] postings = productDict.getPostings( product );
+                int size = productDict.getPostingsSize( product );
+                startProduct( productDict.getTerm( product ), size );
+                for (int i = 0; i < size; i++) {
+                    addPosting( postings[i], 0 );
                 }
-                int prevReviewId = 0;
-                productPositionsW.writeInt( positionId );
-
-                for (int reviewId : productDict.get( product )) {
-                    int gapReviewId = reviewId - prevReviewId;
-                    byte[] reviewEncoded = gamma.encode( gapReviewId );
-                    positionId += reviewEncoded.length;
-                    productPostingW.write( reviewEncoded );
-                    prevReviewId = reviewId;
+                endProduct();
+            }
+        } catch (Exception e) {
+            System.out.println( "Error in writing product!" );
+        }
+    }
+
+    /***
+     * Starts writing the next product id (in lexicographic order): writes it into the front coding files,
+     * and starts its posting list, whose postings are then added by addPosting and ended by endProduct.
+     * @param product - The product id
+     * @param count - The number of reviews of the product
+     */
+    private void startProduct(String product, int count) throws IOException {
+        productSizesW.writeInt( product.length() );
+        // not new block
+        if (productsWritten % K_products != 0) {
+            int curPrefixSize = findPrefixSize( prevProduct, product );
+            productSizesW.writeInt( curPrefixSize );
+            productLongStringW.write( product.substring( curPrefixSize ) );
+            locationsLongStringW.writeInt( productsConcatenationLength );
+            productsConcatenationLength += product.length() - curPrefixSize;
+        } else {
+            productSizesW.writeInt( 0 );
+            productInfoBlocksW.writeInt( productsConcatenationLength );
+            productLongStringW.write( product );
+            locationsLongStringW.writeInt( productsConcatenationLength );
+            productsConcatenationLength += product.length();
+        }
+        productPositionsW.writeInt( (int) (productPostingW.position() >>> 3) );
+        startPostingList( productPostingW, count, false );
+        prevProduct = product;
+    }
+
+    /***
+     * Ends the posting list of the product being written.
+     */
+    private void endProduct() throws IOException {
+        endPostingList();
+        productPostingW.align();
+        productsWritten++;
+    }
+
+    /***
+     * Writes the number of reviews of each token, so it is known without the posting list of the token: the
+     * number of tokens and the number of bits of each number, as ints, followed by the numbers, by the index of
+     * the token, packed in as many bits as the largest number needs.
+     */
+    private void writeDocumentFrequencies() throws IOException {
+        File documentFrequenciesFile = new File( dir + "\\documentFrequencies.bin" );
+        boolean created = documentFrequenciesFile.createNewFile();
+        BitOutputStream documentFrequenciesW = new BitOutputStream( new BufferedOutputStream( new FileOutputStream(
+                dir + "\\documentFrequencies.bin" ) ) );
+        int max = 0;
+        for (int i = 0; i < tokensWritten; i++) {
+            max = Math.max( max, documentFrequencies[i] );
+        }
+        int bits = PackedInts.bitsRequired( max );
+        documentFrequenciesW.writeBits( tokensWritten, 32 );
+        documentFrequenciesW.writeBits( bits, 32 );
+        PackedInts.write( documentFrequenciesW, documentFrequencies, 0, tokensWritten, bits );
+        documentFrequenciesW.close();
+    }
+
+    /***
+     * Writes the forward column from review ids to products: the number of reviews and the number of bits
+     * of each product ordinal, as ints, followed by the ordinal (the index in the products dictionary) of
+     * the product of each review, by review id, packed in ceil(log2(number of products)) bits each.
+     * The ordinals are collected a window of reviews at a time from the product posting lists written,
+     * continuing each list where the previous window left it.
+     */
+    private void writeReviewProducts() throws IOException {
+        ByteBuffer postingLists = Dictionary.mapFile( dir + "\\productPosting.bin" );
+        IntBuffer positions = Dictionary.mapInts( dir + "\\positionsProduct.bin" );
+        File reviewProductsFile = new File( dir + "\\reviewProducts.bin" );
+        boolean created = reviewProductsFile.createNewFile();
+        BitOutputStream reviewProductsW = new BitOutputStream( new BufferedOutputStream( new FileOutputStream( dir +
+                "\\reviewProducts.bin" ) ) );
+        int bits = PackedInts.bitsRequired( Math.max( 0, productsWritten - 1 ) );
+        reviewProductsW.writeBits( reviews, 32 );
+        reviewProductsW.writeBits( bits, 32 );
+        PostingCursors cursors = new PostingCursors( postingLists, positions, productsWritten, formatVersion, codec,
+                false );
+        int[] reviewProducts = new int[reviewsWindow( Integer.BYTES )];
+        for (int from = 1; from <= reviews; from += reviewProducts.length) {
+            int to = Math.min( reviews + 1, from + reviewProducts.length );
+            for (int product = 0; product < productsWritten; product++) {
+                PostingIterator postings = cursors.open( product, from, to );
+                if (postings == null) {
+                    continue;
+                }
+                for (int reviewId = postings.docId(); reviewId < to; reviewId = postings.nextDoc()) {
+                    reviewProducts[reviewId - from] = product;
                 }
-                posAccordingToBlocks++;
-                prevProduct = product;
+                cursors.close( product, postings );
             }
-            productLongStringW.write( concatenation );
+            PackedInts.write( reviewProductsW, reviewProducts, 0, to - from, bits );
+        }
+        reviewProductsW.close();
+    }
+
+    /***
+     * Closes the products front coding files.
+     */
+    private void closeDicProductFile() {
+        try {
             productLongStringW.close();
             productInfoBlocksW.close();
             locationsLongStringW.close();
@@ -354,45 +824,210 @@ public class SlowIndexWriter {
      * Writes all the tokens and their data into the corresponding files.
      */
     private void buildDicFile() {
-        String concatenation = "";
-        int posAccordingToBlocks = 0; // index to token number
-        int positionId = 0;
-        String prevToken = "";
         try {
-            for (String token : dictionary.keySet()) {
-                sizesW.writeInt( token.length() );
-                int curPrefixSize = findPrefixSize( prevToken, token );
-                sizesW.writeInt( curPrefixSize );
-                // not new block
-                if (posAccordingToBlocks % K_words != 0) {
-                    concatenation = concatenation.concat( token.substring( curPrefixSize ) );
-                } else {
-                    infoBlocksW.writeInt( concatenation.length() );
-                    concatenation = concatenation.concat( token );
+            for (int token : dictionary.sortedOrdinals()) {
+                int[] postings = dictionary.getPostings( token );
+                int size = dictionary.getPostingsSize( token );
+                int[] positions = withPositions ? dictionary.getPositions( token ) : null;
+                int position = 0; // the index of the first position of the current posting
+                startToken( dictionary.getTerm( token ), size / 2 );
+                for (int i = 0; i < size; i += 2) {
+                    addTokenPosting( postings[i], postings[i + 1], positions, position );
+                    position += postings[i + 1];
                 }
-                int allFrequencyInReviews = 0;
-                int prevReviewId = 0;
-                positionsW.writeInt( positionId );
-
-                for (int reviewId : dictionary.get( token ).keySet()) {
-                    int gapReviewId = reviewId - prevReviewId;
-                    byte[] reviewEncoded = gamma.encode( gapReviewId );
-                    positionId += reviewEncoded.length;
-                    int freqOneReview = dictionary.get( token ).get( reviewId );
-                    byte[] fregEncoded = gamma.encode( freqOneReview );
-                    positionId += fregEncoded.length;
-                    postingW.write( reviewEncoded );
-                    postingW.write( fregEncoded );
-                    allFrequencyInReviews += freqOneReview;
-                    prevReviewId = reviewId;
+                endToken();
+            }
+        } catch (Exception e) {
+            System.out.println( "Error in writing!" );
+        }
+    }
+
+    /***
+     * Starts writing the next token (in lexicographic order): writes it into the front coding files, and
+     * starts its posting list, whose postings are then added by addTokenPosting and ended by endToken.
+     * @param token - The token
+     * @param count - The number of reviews of the token
+     */
+    private void startToken(String token, int count) throws IOException {
+        sizesW.writeInt( token.length() );
+        int curPrefixSize = findPrefixSize( prevToken, token );
+        sizesW.writeInt( curPrefixSize );
+        // not new block
+        if (tokensWritten % K_words != 0) {
+            longStringW.write( token.substring( curPrefixSize ) );
+            tokensConcatenationLength += token.length() - curPrefixSize;
+        } else {
+            infoBlocksW.writeInt( tokensConcatenationLength );
+            longStringW.write( token );
+            tokensConcatenationLength += token.length();
+        }
+        positionsW.writeInt( (int) (postingW.position() >>> 3) );
+        startPostingList( postingW, count, true );
+        listFrequency = 0;
+        if (withPositions) {
+            wordPositionsIndexW.writeInt( (int) (wordPositionsW.position() >>> 3) );
+        }
+        if (tokensWritten == documentFrequencies.length) {
+            documentFrequencies = Arrays.copyOf( documentFrequencies, 2 * tokensWritten );
+        }
+        documentFrequencies[tokensWritten] = count;
+        prevToken = token;
+    }
+
+    /***
+     * Adds the next posting of the token being written. The positions of a token are written into the word
+     * positions file, starting at a whole byte whose position is written into the word positions index file.
+     * The positions of each posting are written by the order of the postings, as the gamma codes of the first
+     * position plus one and then of the gaps between the positions; their number is the frequency of the
+     * posting. Like the posting list, the positions start with an entry for every SKIP_INTERVAL postings: the
+     * bit offset, in 32 bits, of the positions of the posting the posting list skip entry skips to, from the
+     * end of the entries. So the positions of a posting are found by decoding only the positions of the
+     * postings before it since the last skip entry.
+     * @param reviewId - The review id of the posting
+     * @param frequency - The frequency of the token in the review
+     * @param positions - The positions of the token, if the index has positions
+     * @param from - The index in positions of the first position of the posting
+     */
+    private void addTokenPosting(int reviewId, int frequency, int[] positions, int from) throws IOException {
+        if (withPositions) {
+            if (postingsAdded > 0 && postingsAdded % IndexHeader.SKIP_INTERVAL == 0) {
+                positionSkips.getStream().writeBits( positionsBits.position(), 32 );
+            }
+            int prevPosition = -1;
+            for (int j = from; j < from + frequency; j++) {
+                positionsBits.getStream().writeGamma( positions[j] - prevPosition );
+                prevPosition = positions[j];
+            }
+        }
+        listFrequency += frequency;
+        addPosting( reviewId, frequency );
+    }
+
+    /***
+     * Ends the posting list and the positions of the token being written.
+     */
+    private void endToken() throws IOException {
+        endPostingList();
+        if (formatVersion == IndexHeader.LEGACY_VERSION) {
+            frequenciesW.write( gamma.encode( listFrequency ) );
+        } else {
+            frequenciesW.writeGamma( listFrequency );
+        }
+        postingW.align();
+        if (withPositions) {
+            positionSkips.copyTo( wordPositionsW );
+            positionsBits.copyTo( wordPositionsW );
+            wordPositionsW.align();
+        }
+        tokensWritten++;
+    }
+
+    /***
+     * Starts a posting list. In the legacy format the postings are written as they are added, as byte padded
+     * gamma codes. In the bit packed format a posting list is the gamma code of the number of postings, then
+     * (from version 3) a skip entry for every SKIP_INTERVAL postings, and then the blocks of SKIP_INTERVAL
+     * postings, written by the codec of the index from the gaps between the review ids (and the frequencies
+     * for tokens). For a byte aligned codec the blocks start at a whole byte.
+     * A skip entry holds, in 32 bits each, the review id of the posting before the skipped to posting, and
+     * the bit offset of the skipped to posting from the start of the blocks. As the offsets come before the
+     * blocks, the blocks and the entries are encoded into scratch streams first, which spill to temporary
+     * files for long lists.
+     * @param out - The posting lists file
+     * @param count - The number of postings of the list
+     * @param withFrequencies - Whether the postings hold frequencies
+     */
+    private void startPostingList(BitOutputStream out, int count, boolean withFrequencies) throws IOException {
+        listW = out;
+        postingsAdded = 0;
+        prevReviewId = 0;
+        blockSize = 0;
+        listWithFrequencies = withFrequencies;
+        if (blocks == null) {
+            blocks = new SpillBuffer( dir + "\\blocks.tmp", SPILL_BYTES );
+            skips = new SpillBuffer( dir + "\\skips.tmp", SPILL_BYTES );
+            positionsBits = new SpillBuffer( dir + "\\wordPositions.tmp", SPILL_BYTES );
+            positionSkips = new SpillBuffer( dir + "\\positionSkips.tmp", SPILL_BYTES );
+            blockGaps = new int[IndexHeader.SKIP_INTERVAL];
+            blockFreqs = new int[IndexHeader.SKIP_INTERVAL];
+        }
+        if (formatVersion != IndexHeader.LEGACY_VERSION) {
+            out.writeGamma( count );
+        }
+    }
+
+    /***
+     * Adds the next posting of the posting list being written.
+     * @param reviewId - The review id of the posting
+     * @param frequency - The frequency of the posting, ignored for a list without frequencies
+     */
+    private void addPosting(int reviewId, int frequency) throws IOException {
+        int gap = reviewId - prevReviewId;
+        if (formatVersion == IndexHeader.LEGACY_VERSION) {
+            listW.write( gamma.encode( gap ) );
+            if (listWithFrequencies) {
+                listW.write( gamma.encode( frequency ) );
+            }
+        } else {
+            if (blockSize == IndexHeader.SKIP_INTERVAL) {
+                writeBlock();
+                if (formatVersion >= IndexHeader.SKIPS_VERSION) {
+                    skips.getStream().writeBits( ((long) prevReviewId << 32) | blocks.position(), 64 );
                 }
-                byte[] allfreqsEncode = gamma.encode( allFrequencyInReviews );
-                frequenciesW.write( allfreqsEncode );
-                posAccordingToBlocks++;
-                prevToken = token;
             }
-            longStringW.write( concatenation );
+            blockGaps[blockSize] = gap;
+            blockFreqs[blockSize] = frequency;
+            blockSize++;
+        }
+        prevReviewId = reviewId;
+        postingsAdded++;
+    }
+
+    private void writeBlock() throws IOException {
+        codec.writeBlock( blocks.getStream(), blockGaps, listWithFrequencies ? blockFreqs : null, blockSize );
+        blockSize = 0;
+    }
+
+    /***
+     * Ends the posting list being written, by copying its skip entries and blocks into the posting lists file.
+     */
+    private void endPostingList() throws IOException {
+        if (formatVersion == IndexHeader.LEGACY_VERSION) {
+            return;
+        }
+        if (blockSize > 0) {
+            writeBlock();
+        }
+        skips.copyTo( listW ); // empty before the skips version
+        if (codec.isByteAligned()) {
+            listW.align();
+        }
+        blocks.copyTo( listW );
+    }
+
+    /***
+     * Deletes the temporary files of the scratch streams of the lists.
+     */
+    private void deleteScratch() {
+        try {
+            if (blocks != null) {
+                blocks.delete();
+                skips.delete();
+                positionsBits.delete();
+                positionSkips.delete();
+                blocks = null;
+            }
+        } catch (Exception e) {
+            System.out.println( "Error Deleting!!!" );
+        }
+    }
+
+    /***
+     * Closes the tokens front coding files.
+     */
+    private void closeDicFile() {
+        try {
             longStringW.close();
+            infoBlocksW.close();
         } catch (Exception e) {
             System.out.println( "Error in writing!" );
         }
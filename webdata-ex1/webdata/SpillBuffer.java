@@ -0,0 +1,115 @@
+package webdata;
+
+import java.io.*;
+import java.util.Arrays;
+
+/***
+ * A scratch bit stream for a part of a list that has to be written whole before it is copied into an index
+ * file, like the blocks of a posting list, which come after the skip entries that point into them.
+ * The bytes of the current list are kept in memory up to a threshold and then spilled to a temporary file,
+ * so a scratch takes bounded memory however long the list is.
+ */
+public class SpillBuffer {
+    private final String fileName; // the temporary file the bytes spill to
+    private final int threshold; // the most bytes kept in memory
+    private byte[] memory;
+    private int memorySize;
+    private OutputStream file; // the temporary file, while the current list is spilled to it
+    private final BitOutputStream bits;
+    private long start; // the position of bits at the start of the current list
+
+    /***
+     * @param fileName - The temporary file the bytes spill to
+     * @param threshold - The most bytes kept in memory
+     */
+    public SpillBuffer(String fileName, int threshold) {
+        this.fileName = fileName;
+        this.threshold = threshold;
+        memory = new byte[Math.min( threshold, 8192 )];
+        bits = new BitOutputStream( new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write( new byte[]{(byte) b}, 0, 1 );
+            }
+
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                append( data, offset, length );
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (file != null) {
+                    file.flush();
+                }
+            }
+        } );
+    }
+
+    /***
+     * @return The stream to write the bits of the current list into
+     */
+    public BitOutputStream getStream() {
+        return bits;
+    }
+
+    /***
+     * @return The number of bits of the current list written so far
+     */
+    public long position() {
+        return bits.position() - start;
+    }
+
+    /***
+     * Writes the bits of the current list into an output stream, and starts the next list.
+     * @param out - The stream to copy the bits into
+     */
+    public void copyTo(BitOutputStream out) throws IOException {
+        long length = position();
+        bits.align();
+        bits.flush();
+        InputStream in;
+        if (file != null) {
+            file.close();
+            file = null;
+            in = new BufferedInputStream( new FileInputStream( fileName ) );
+        } else {
+            in = new ByteArrayInputStream( memory, 0, memorySize );
+        }
+        try {
+            out.write( in, length );
+        } finally {
+            in.close();
+        }
+        memorySize = 0;
+        start = bits.position();
+    }
+
+    /***
+     * Deletes the temporary file.
+     */
+    public void delete() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+        new File( fileName ).delete();
+    }
+
+    private void append(byte[] data, int offset, int length) throws IOException {
+        if (file == null && memorySize + length > threshold) {
+            file = new BufferedOutputStream( new FileOutputStream( fileName ) );
+            file.write( memory, 0, memorySize );
+            memorySize = 0;
+        }
+        if (file != null) {
+            file.write( data, offset, length );
+            return;
+        }
+        if (memorySize + length > memory.length) {
+            memory = Arrays.copyOf( memory, Math.min( threshold, Math.max( 2 * memory.length, memorySize + length ) ) );
+        }
+        System.arraycopy( data, offset, memory, memorySize, length );
+        memorySize += length;
+    }
+}
@@ -0,0 +1,43 @@
+package webdata;
+
+/***
+ * The statistics of a token that a query can be planned by, such as which posting lists to read first or
+ * which tokens can not change the best results of a ranked search.
+ */
+public class TermStatistics {
+    private final int documentFrequency;
+    private final int collectionFrequency;
+    private final double maxScore;
+
+    public TermStatistics(int documentFrequency, int collectionFrequency, double maxScore) {
+        this.documentFrequency = documentFrequency;
+        this.collectionFrequency = collectionFrequency;
+        this.maxScore = maxScore;
+    }
+
+    /***
+     * @return The number of reviews containing the token
+     */
+    public int getDocumentFrequency() {
+        return documentFrequency;
+    }
+
+    /***
+     * @return The number of times the token appears in all the reviews
+     */
+    public int getCollectionFrequency() {
+        return collectionFrequency;
+    }
+
+    /***
+     * @return An upper bound on the BM25 score of the token in any review
+     */
+    public double getMaxScore() {
+        return maxScore;
+    }
+
+    @Override
+    public String toString() {
+        return documentFrequency + ":" + collectionFrequency + ":" + maxScore;
+    }
+}
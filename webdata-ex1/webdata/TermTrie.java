@@ -0,0 +1,378 @@
+package webdata;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * A compacted trie of the terms of a dictionary, mapped from a file, which maps each term to its index
+ * (ordinal) in the dictionary and enumerates the terms that start with a prefix or match a wildcard pattern
+ * in lexicographic order without scanning the whole dictionary.
+ * Every node has the label of the edge that leads to it, and a node with a single child is merged with it,
+ * so the labels are the longest common prefixes of the terms under them. As the terms are sorted, the terms
+ * under a node have consecutive ordinals, and each node holds the first of them and their number.
+ * <p>
+ * The file holds the number of terms and the position of the root node, as ints, followed by the nodes,
+ * each written after its children: the length of the label as a byte and the label (the terms are of ASCII
+ * characters), a byte which is 1 if the path to the node is a term, the first ordinal and the number of
+ * terms under the node as ints, the number of children as a byte, and for each child (by its first char)
+ * the first char of its label as a byte and its position as an int.
+ */
+public class TermTrie {
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_PATTERN_LENGTH = 63; // the states of a pattern are the bits of a long
+    private final ByteBuffer file;
+    private final int root;
+
+    private TermTrie(ByteBuffer file) {
+        this.file = file;
+        root = HEADER_SIZE + file.getInt( 4 );
+    }
+
+    /***
+     * Maps the trie of a dictionary written by write.
+     * @param fileName - The trie file
+     * @return The trie of the dictionary
+     */
+    public static TermTrie read(String fileName) throws IOException {
+        return new TermTrie( Dictionary.mapFile( fileName ) );
+    }
+
+    /***
+     * Builds the trie of the terms of a dictionary and writes it into a file.
+     * @param fileName - The trie file to create
+     * @param terms - The distinct terms of the dictionary, sorted, by their ordinal
+     */
+    public static void write(String fileName, List<String> terms) throws IOException {
+        write( fileName, terms.iterator() );
+    }
+
+    /***
+     * Builds the trie of the terms of a dictionary, read one at a time, and writes it into a file. A node is
+     * written as soon as the next term does not start with its path, so only the nodes on the path to the last
+     * term are kept in memory, and the header is rewritten once the root is known.
+     * @param fileName - The trie file to create
+     * @param terms - The distinct terms of the dictionary, sorted, by their ordinal
+     */
+    public static void write(String fileName, Iterator<String> terms) throws IOException {
+        DataOutputStream nodes = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( fileName ) ) );
+        int count = 0;
+        int root;
+        try {
+            // the header is rewritten when the number of terms and the root are known
+            nodes.writeInt( 0 );
+            nodes.writeInt( 0 );
+            ArrayDeque<Node> path = new ArrayDeque<>(); // the nodes not written yet, the deepest first
+            String previous = null;
+            while (terms.hasNext()) {
+                String term = terms.next();
+                if (previous != null) {
+                    closeNodes( nodes, path, commonPrefix( previous, term ), count );
+                }
+                path.push( new Node( term, count, term.length(), true ) );
+                previous = term;
+                count++;
+            }
+            if (count == 0) {
+                root = writeNode( nodes, new Node( "", 0, 0, false ), 0, 0 );
+            } else {
+                root = closeNodes( nodes, path, -1, count );
+            }
+        } finally {
+            nodes.close();
+        }
+        RandomAccessFile file = new RandomAccessFile( fileName, "rw" );
+        file.writeInt( count );
+        file.writeInt( root );
+        file.close();
+    }
+
+    /***
+     * Writes the nodes whose paths the next term does not start with, as all their terms were read, and adds
+     * each of them to its parent, which is opened if the next term shares a longer prefix with the last term
+     * than with the terms before it.
+     * @param prefix - The length of the prefix the next term shares with the last term, or -1 after the last term
+     * @param to - The ordinal of the next term
+     * @return The position of the last node written
+     */
+    private static int closeNodes(DataOutputStream nodes, ArrayDeque<Node> path, int prefix, int to)
+            throws IOException {
+        int position = -1;
+        while (!path.isEmpty() && prefix < path.peek().end) {
+            Node node = path.pop();
+            int depth = Math.max( Math.max( prefix, 0 ), path.isEmpty() ? 0 : path.peek().end );
+            position = writeNode( nodes, node, depth, to );
+            if (!path.isEmpty() && prefix <= path.peek().end) {
+                path.peek().addChild( node.first.charAt( depth ), position );
+            } else if (prefix >= 0) {
+                Node parent = new Node( node.first, node.from, prefix, false );
+                parent.addChild( node.first.charAt( prefix ), position );
+                path.push( parent );
+            }
+        }
+        return position;
+    }
+
+    /***
+     * Writes a node whose terms were all read after its children.
+     * @param depth - The length of the path to the parent of the node
+     * @param to - The ordinal after the last term under the node
+     * @return The position of the node
+     */
+    private static int writeNode(DataOutputStream nodes, Node node, int depth, int to) throws IOException {
+        int position = nodes.size() - HEADER_SIZE;
+        nodes.writeByte( node.end - depth );
+        for (int i = depth; i < node.end; i++) {
+            nodes.writeByte( node.first.charAt( i ) );
+        }
+        nodes.writeByte( node.isTerm ? 1 : 0 );
+        nodes.writeInt( node.from );
+        nodes.writeInt( to - node.from );
+        nodes.writeByte( node.childrenCount );
+        for (int i = 0; i < node.childrenCount; i++) {
+            nodes.writeByte( node.childChars[i] );
+            nodes.writeInt( node.childPositions[i] );
+        }
+        return position;
+    }
+
+    /***
+     * @return The length of the longest common prefix of two terms
+     */
+    private static int commonPrefix(String first, String second) {
+        int length = 0;
+        while (length < first.length() && length < second.length() && first.charAt( length ) == second.charAt(
+                length )) {
+            length++;
+        }
+        return length;
+    }
+
+    /***
+     * @param term - A term
+     * @return The ordinal of the term, or -1 if it is not in the dictionary
+     */
+    public int lookup(String term) {
+        int node = root;
+        int matched = 0;
+        while (true) {
+            int labelLength = file.get( node ) & 0xFF;
+            for (int i = 0; i < labelLength; i++) {
+                if (matched == term.length() || term.charAt( matched++ ) != file.get( node + 1 + i )) {
+                    return -1;
+                }
+            }
+            int info = node + 1 + labelLength;
+            if (matched == term.length()) {
+                return file.get( info ) == 1 ? file.getInt( info + 1 ) : -1;
+            }
+            node = child( info, term.charAt( matched ) );
+            if (node == -1) {
+                return -1;
+            }
+        }
+    }
+
+    /***
+     * @param prefix - A prefix
+     * @param maxExpansions - The largest number of terms to return
+     * @return The first terms that start with the prefix, in lexicographic order, mapped to their ordinals
+     */
+    public Map<String, Integer> expandPrefix(String prefix, int maxExpansions) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        StringBuilder path = new StringBuilder();
+        int node = root;
+        while (true) {
+            int labelLength = file.get( node ) & 0xFF;
+            for (int i = 0; i < labelLength; i++) {
+                char c = (char) file.get( node + 1 + i );
+                if (path.length() < prefix.length() && prefix.charAt( path.length() ) != c) {
+                    return terms;
+                }
+                path.append( c );
+            }
+            if (path.length() >= prefix.length()) {
+                collect( node, path, terms, maxExpansions );
+                return terms;
+            }
+            node = child( node + 1 + labelLength, prefix.charAt( path.length() ) );
+            if (node == -1) {
+                return terms;
+            }
+        }
+    }
+
+    /***
+     * @param prefix - A prefix
+     * @return The number of terms that start with the prefix
+     */
+    public int countPrefix(String prefix) {
+        int node = root;
+        int matched = 0;
+        while (true) {
+            int labelLength = file.get( node ) & 0xFF;
+            for (int i = 0; i < labelLength && matched < prefix.length(); i++) {
+                if (prefix.charAt( matched++ ) != file.get( node + 1 + i )) {
+                    return 0;
+                }
+            }
+            int info = node + 1 + labelLength;
+            if (matched == prefix.length()) {
+                return file.getInt( info + 5 );
+            }
+            node = child( info, prefix.charAt( matched ) );
+            if (node == -1) {
+                return 0;
+            }
+        }
+    }
+
+    /***
+     * Adds the terms under a node, whose path (including its label) is given, until there are enough.
+     */
+    private void collect(int node, StringBuilder path, Map<String, Integer> terms, int maxExpansions) {
+        int info = node + 1 + (file.get( node ) & 0xFF);
+        if (terms.size() >= maxExpansions) {
+            return;
+        }
+        if (file.get( info ) == 1) {
+            terms.put( path.toString(), file.getInt( info + 1 ) );
+        }
+        int children = file.get( info + 9 ) & 0xFF;
+        for (int i = 0; i < children && terms.size() < maxExpansions; i++) {
+            int child = HEADER_SIZE + file.getInt( info + 10 + 5 * i + 1 );
+            int length = path.length();
+            int labelLength = file.get( child ) & 0xFF;
+            for (int j = 0; j < labelLength; j++) {
+                path.append( (char) file.get( child + 1 + j ) );
+            }
+            collect( child, path, terms, maxExpansions );
+            path.setLength( length );
+        }
+    }
+
+    /***
+     * Finds the terms that match a wildcard pattern, where '?' matches any single char and '*' matches any
+     * sequence of chars. The trie is walked with the set of pattern positions the path can be at, so the
+     * subtrees no position survives are skipped.
+     * @param pattern - The pattern, of at most 63 chars
+     * @param maxExpansions - The largest number of terms to return
+     * @return The first terms that match the pattern, in lexicographic order, mapped to their ordinals
+     * @throws IllegalArgumentException if the pattern is too long
+     */
+    public Map<String, Integer> expandWildcard(String pattern, int maxExpansions) {
+        if (pattern.length() > MAX_PATTERN_LENGTH) {
+            throw new IllegalArgumentException( "The pattern is longer than " + MAX_PATTERN_LENGTH + " chars" );
+        }
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        match( root, pattern, closure( pattern, 1L ), new StringBuilder(), terms, maxExpansions );
+        return terms;
+    }
+
+    private void match(int node, String pattern, long states, StringBuilder path, Map<String, Integer> terms,
+                       int maxExpansions) {
+        int labelLength = file.get( node ) & 0xFF;
+        int length = path.length();
+        for (int i = 0; i < labelLength; i++) {
+            char c = (char) file.get( node + 1 + i );
+            states = step( pattern, states, c );
+            if (states == 0) {
+                path.setLength( length );
+                return;
+            }
+            path.append( c );
+        }
+        int info = node + 1 + labelLength;
+        if (file.get( info ) == 1 && (states & (1L << pattern.length())) != 0) {
+            terms.put( path.toString(), file.getInt( info + 1 ) );
+        }
+        int children = file.get( info + 9 ) & 0xFF;
+        for (int i = 0; i < children && terms.size() < maxExpansions; i++) {
+            match( HEADER_SIZE + file.getInt( info + 10 + 5 * i + 1 ), pattern, states, path, terms, maxExpansions );
+        }
+        path.setLength( length );
+    }
+
+    /***
+     * @return The pattern positions reached from the given ones by a char
+     */
+    private static long step(String pattern, long states, char c) {
+        long next = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            if ((states & (1L << i)) != 0) {
+                char p = pattern.charAt( i );
+                if (p == '*') {
+                    next |= 1L << i;
+                } else if (p == '?' || p == c) {
+                    next |= 1L << (i + 1);
+                }
+            }
+        }
+        return closure( pattern, next );
+    }
+
+    /***
+     * @return The given pattern positions with the positions after the '*' at any of them, as a '*' may match
+     * no chars
+     */
+    private static long closure(String pattern, long states) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if ((states & (1L << i)) != 0 && pattern.charAt( i ) == '*') {
+                states |= 1L << (i + 1);
+            }
+        }
+        return states;
+    }
+
+    /***
+     * @param info - The position of the node after its label
+     * @param c - The first char of the label of a child
+     * @return The position of the child, or -1 if the node has no such child
+     */
+    private int child(int info, char c) {
+        int children = file.get( info + 9 ) & 0xFF;
+        for (int i = 0; i < children; i++) {
+            int entry = info + 10 + 5 * i;
+            if (file.get( entry ) == c) {
+                return HEADER_SIZE + file.getInt( entry + 1 );
+            }
+        }
+        return -1;
+    }
+
+    /***
+     * A node whose terms were not all read yet, on the path to the last term read.
+     */
+    private static class Node {
+        private final String first; // the first term under the node
+        private final int from; // the ordinal of the first term under the node
+        private final int end; // the length of the path to the node
+        private final boolean isTerm;
+        private int childrenCount;
+        private int[] childChars; // the children have distinct first chars
+        private int[] childPositions;
+
+        private Node(String first, int from, int end, boolean isTerm) {
+            this.first = first;
+            this.from = from;
+            this.end = end;
+            this.isTerm = isTerm;
+            childChars = new int[2];
+            childPositions = new int[2];
+        }
+
+        private void addChild(char c, int position) {
+            if (childrenCount == childChars.length) {
+                childChars = Arrays.copyOf( childChars, 2 * childrenCount );
+                childPositions = Arrays.copyOf( childPositions, 2 * childrenCount );
+            }
+            childChars[childrenCount] = c;
+            childPositions[childrenCount++] = position;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package webdata;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import org.junit.Test;
+
+
+public class TermTrieTest {
+
+    private static final List<String> TERMS = Arrays.asList(
+        "cat", "catalog", "cats", "dig", "dog", "dogfood", "dogs", "dug", "food", "good", "goods");
+
+    private TermTrie writeTrie(List<String> terms) throws IOException
+    {
+        File file = File.createTempFile("tokens", "Trie.bin");
+        file.deleteOnExit();
+        TermTrie.write(file.getPath(), terms);
+        return TermTrie.read(file.getPath());
+    }
+
+    @Test
+    public void EveryTermShouldMapToItsOrdinal() throws IOException
+    {
+        TermTrie trie = writeTrie(TERMS);
+
+        for (int i = 0; i < TERMS.size(); i++) {
+            assertEquals(TERMS.get(i), i, trie.lookup(TERMS.get(i)));
+        }
+        for (String missing : Arrays.asList("", "ca", "catalogs", "do", "e", "goo", "zebra")) {
+            assertEquals(missing, -1, trie.lookup(missing));
+        }
+    }
+
+    @Test
+    public void PrefixShouldExpandInOrder() throws IOException
+    {
+        TermTrie trie = writeTrie(TERMS);
+
+        assertEquals(Arrays.asList("dog", "dogfood", "dogs"), new ArrayList<>(trie.expandPrefix("dog", 10).keySet()));
+        assertEquals(Arrays.asList("cat", "catalog"), new ArrayList<>(trie.expandPrefix("ca", 2).keySet()));
+        assertEquals(Integer.valueOf(5), trie.expandPrefix("dogf", 10).get("dogfood"));
+        assertEquals(0, trie.expandPrefix("dogx", 10).size());
+        assertEquals(5, trie.countPrefix("d"));
+        assertEquals(TERMS.size(), trie.countPrefix(""));
+    }
+
+    @Test
+    public void WildcardShouldMatchAnyChars() throws IOException
+    {
+        TermTrie trie = writeTrie(TERMS);
+
+        assertEquals(Arrays.asList("dig", "dog", "dug"), new ArrayList<>(trie.expandWildcard("d?g", 10).keySet()));
+        assertEquals(Arrays.asList("cats", "dogs", "goods"), new ArrayList<>(trie.expandWildcard("*s", 10).keySet()));
+        assertEquals(Arrays.asList("dogfood", "food", "good", "goods"),
+                new ArrayList<>(trie.expandWildcard("*o*d*", 10).keySet()));
+        assertEquals(Arrays.asList("cat"), new ArrayList<>(trie.expandWildcard("c*", 1).keySet()));
+        assertEquals(0, writeTrie(new ArrayList<>()).expandWildcard("*", 10).size());
+    }
+
+}
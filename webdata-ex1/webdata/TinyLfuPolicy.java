@@ -0,0 +1,179 @@
+package webdata;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * A W-TinyLFU policy: new posting lists enter a small LRU window, and a list leaving the window is only
+ * admitted to the main space if it was accessed more often than the list the main space would evict for
+ * it, as estimated by a FrequencySketch. A scan over many rare terms thus only churns the window instead
+ * of flushing the popular lists.
+ * The main space is a segmented LRU: lists hit again while on probation are promoted to the protected
+ * segment, and lists pushed out of the protected segment go back to probation.
+ */
+public class TinyLfuPolicy implements EvictionPolicy {
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80; // of the main space
+    private static final int AVERAGE_ENTRY_BYTES = 256; // to size the sketch by the expected number of entries
+    private final long windowMax;
+    private final long mainMax;
+    private final long protectedMax;
+    private final FrequencySketch sketch;
+    // insertion ordered, the entry to evict first at the head; an accessed entry is moved to the tail
+    private final LinkedHashMap<String, int[]> window;
+    private final LinkedHashMap<String, int[]> probation;
+    private final LinkedHashMap<String, int[]> protectedEntries;
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+
+    /***
+     * @param maxBytes - The memory the cached entries may take
+     */
+    public TinyLfuPolicy(long maxBytes) {
+        windowMax = Math.max( 1, maxBytes * WINDOW_PERCENT / 100 );
+        mainMax = maxBytes - windowMax;
+        protectedMax = mainMax * PROTECTED_PERCENT / 100;
+        sketch = new FrequencySketch( (int) Math.min( 1 << 20, maxBytes / AVERAGE_ENTRY_BYTES ) );
+        window = new LinkedHashMap<>();
+        probation = new LinkedHashMap<>();
+        protectedEntries = new LinkedHashMap<>();
+    }
+
+    @Override
+    public int[] get(String key) {
+        sketch.increment( key );
+        int[] postings = window.remove( key );
+        if (postings != null) {
+            window.put( key, postings );
+            return postings;
+        }
+        postings = protectedEntries.remove( key );
+        if (postings != null) {
+            protectedEntries.put( key, postings );
+            return postings;
+        }
+        postings = probation.remove( key );
+        if (postings != null) {
+            long bytes = PostingCache.entryBytes( key, postings );
+            probationBytes -= bytes;
+            protectedEntries.put( key, postings );
+            protectedBytes += bytes;
+            demoteProtected();
+        }
+        return postings;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return window.containsKey( key ) || probation.containsKey( key ) || protectedEntries.containsKey( key );
+    }
+
+    @Override
+    public int put(String key, int[] postings, long bytes) {
+        if (bytes > Math.max( windowMax, mainMax )) {
+            return 1;
+        }
+        window.put( key, postings );
+        windowBytes += bytes;
+        int evicted = 0;
+        while (windowBytes > windowMax) {
+            Map.Entry<String, int[]> candidate = window.entrySet().iterator().next();
+            long candidateBytes = PostingCache.entryBytes( candidate.getKey(), candidate.getValue() );
+            window.remove( candidate.getKey() );
+            windowBytes -= candidateBytes;
+            evicted += admit( candidate.getKey(), candidate.getValue(), candidateBytes );
+        }
+        return evicted;
+    }
+
+    /***
+     * Moves a list that left the window to the main space if it is more popular than the lists it would
+     * push out of the main space, or drops it otherwise.
+     * @return The number of entries evicted
+     */
+    private int admit(String key, int[] postings, long bytes) {
+        if (bytes > mainMax) {
+            return 1;
+        }
+        int candidateFrequency = sketch.frequency( key );
+        // compare with the victims first, in the order they are evicted below, so a rejected candidate leaves
+        // the main space as it was
+        long freed = mainMax - probationBytes - protectedBytes;
+        for (LinkedHashMap<String, int[]> segment : List.of( probation, protectedEntries )) {
+            for (Map.Entry<String, int[]> victim : segment.entrySet()) {
+                if (freed >= bytes) {
+                    break;
+                }
+                if (sketch.frequency( victim.getKey() ) >= candidateFrequency) {
+                    return 1;
+                }
+                freed += PostingCache.entryBytes( victim.getKey(), victim.getValue() );
+            }
+        }
+        int evicted = 0;
+        while (probationBytes + protectedBytes + bytes > mainMax) {
+            LinkedHashMap<String, int[]> segment = probation.isEmpty() ? protectedEntries : probation;
+            Map.Entry<String, int[]> victim = segment.entrySet().iterator().next();
+            long victimBytes = PostingCache.entryBytes( victim.getKey(), victim.getValue() );
+            segment.remove( victim.getKey() );
+            if (segment == probation) {
+                probationBytes -= victimBytes;
+            } else {
+                protectedBytes -= victimBytes;
+            }
+            evicted++;
+        }
+        probation.put( key, postings );
+        probationBytes += bytes;
+        return evicted;
+    }
+
+    /***
+     * Moves the least recently used protected lists back to probation while the protected segment is over
+     * its budget.
+     */
+    private void demoteProtected() {
+        while (protectedBytes > protectedMax) {
+            Map.Entry<String, int[]> eldest = protectedEntries.entrySet().iterator().next();
+            long bytes = PostingCache.entryBytes( eldest.getKey(), eldest.getValue() );
+            protectedEntries.remove( eldest.getKey() );
+            protectedBytes -= bytes;
+            probation.put( eldest.getKey(), eldest.getValue() );
+            probationBytes += bytes;
+        }
+    }
+
+    @Override
+    public long evict() {
+        // the main space victims first, in the order admit evicts them, and the newest lists last
+        for (LinkedHashMap<String, int[]> segment : List.of( probation, protectedEntries, window )) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            Map.Entry<String, int[]> victim = segment.entrySet().iterator().next();
+            long bytes = PostingCache.entryBytes( victim.getKey(), victim.getValue() );
+            segment.remove( victim.getKey() );
+            if (segment == probation) {
+                probationBytes -= bytes;
+            } else if (segment == protectedEntries) {
+                protectedBytes -= bytes;
+            } else {
+                windowBytes -= bytes;
+            }
+            return bytes;
+        }
+        return 0;
+    }
+
+    @Override
+    public long bytes() {
+        return windowBytes + probationBytes + protectedBytes;
+    }
+
+    @Override
+    public int entries() {
+        return window.size() + probation.size() + protectedEntries.size();
+    }
+}
@@ -0,0 +1,149 @@
+package webdata;
+
+/***
+ * Splits a review text line into its tokens in one pass over the characters of the line.
+ * The tokens are exactly the ones of lower casing the line, splitting it by white spaces, skipping the
+ * "review/text:" field name and splitting each part by the characters that are not in [a-z0-9].
+ * Each token is written into a reusable buffer, so no objects are allocated while scanning a line.
+ */
+public class Tokenizer {
+    private static final String TEXT_FIELD = "review/text:";
+
+    private String line;
+    private int position; // the next character to scan
+    private int partEnd; // the end of the white space separated part that is being scanned
+    private char[] token; // the current token
+    private int length; // the length of the current token
+
+    public Tokenizer() {
+        token = new char[32];
+    }
+
+    /***
+     * Starts scanning a new line.
+     * @param line - The review text line
+     */
+    public void reset(String line) {
+        this.line = line;
+        position = 0;
+        partEnd = 0;
+        length = 0;
+    }
+
+    /***
+     * Moves to the next token of the line.
+     * @return false if there are no more tokens in the line
+     */
+    public boolean next() {
+        length = 0;
+        while (true) {
+            if (position >= partEnd && !nextPart()) {
+                return false;
+            }
+            while (position < partEnd) {
+                char c = line.charAt( position++ );
+                if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                    append( c );
+                } else if (c >= 'A' && c <= 'Z') {
+                    append( (char) (c + ('a' - 'A')) );
+                } else if (c == '\u212A') { // the kelvin sign is lower cased to 'k'
+                    append( 'k' );
+                } else if (c == '\u0130') { // lower cased to 'i' followed by a combining dot
+                    append( 'i' );
+                    return true;
+                } else if (length > 0) {
+                    return true;
+                }
+            }
+            if (length > 0) {
+                return true;
+            }
+        }
+    }
+
+    /***
+     * Moves to the next white space separated part of the line, skipping the review text field name.
+     * @return false if there are no more parts in the line
+     */
+    private boolean nextPart() {
+        int lineLength = line.length();
+        while (true) {
+            while (position < lineLength && isWhiteSpace( line.charAt( position ) )) {
+                position++;
+            }
+            if (position == lineLength) {
+                return false;
+            }
+            partEnd = position;
+            while (partEnd < lineLength && !isWhiteSpace( line.charAt( partEnd ) )) {
+                partEnd++;
+            }
+            if (!isTextField()) {
+                return true;
+            }
+            position = partEnd;
+        }
+    }
+
+    /***
+     * @return Whether the current part is the review text field name (ignoring case)
+     */
+    private boolean isTextField() {
+        if (partEnd - position != TEXT_FIELD.length()) {
+            return false;
+        }
+        for (int i = 0; i < TEXT_FIELD.length(); i++) {
+            char c = line.charAt( position + i );
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != TEXT_FIELD.charAt( i )) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /***
+     * @param c - A character
+     * @return Whether the character is a white space, the same as \s in a regular expression
+     */
+    private static boolean isWhiteSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /***
+     * Appends a character to the current token.
+     * @param c - The character to append
+     */
+    private void append(char c) {
+        if (length == token.length) {
+            char[] bigger = new char[2 * token.length];
+            System.arraycopy( token, 0, bigger, 0, length );
+            token = bigger;
+        }
+        token[length++] = c;
+    }
+
+    /***
+     * @return The buffer that holds the current token. Only the first length() characters are valid, and
+     * the buffer is overwritten by the next call to next().
+     */
+    public char[] buffer() {
+        return token;
+    }
+
+    /***
+     * @return The length of the current token
+     */
+    public int length() {
+        return length;
+    }
+
+    /***
+     * @return The current token as a new string
+     */
+    public String token() {
+        return new String( token, 0, length );
+    }
+}
@@ -0,0 +1,97 @@
+package webdata;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+
+/***
+ * Compares the streaming Tokenizer with the regular expressions splitting it replaced.
+ * Usage: TokenizerBenchmark inputFile [iterations]
+ * Both tokenizers run over all the review text lines of the input file, after checking that they produce
+ * exactly the same tokens.
+ */
+public class TokenizerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 1 ? Integer.parseInt( args[1] ) : 20;
+        ArrayList<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader( new FileReader( args[0] ) );
+        String line = reader.readLine();
+        while (line != null) {
+            if (line.contains( "review/text:" )) {
+                lines.add( line );
+            }
+            line = reader.readLine();
+        }
+        reader.close();
+
+        Tokenizer tokenizer = new Tokenizer();
+        long tokens = 0;
+        for (String text : lines) {
+            ArrayList<String> expected = splitTokens( text );
+            tokenizer.reset( text );
+            int i = 0;
+            while (tokenizer.next()) {
+                if (i >= expected.size() || !expected.get( i ).equals( tokenizer.token() )) {
+                    throw new IllegalStateException( "Different tokens for line: " + text );
+                }
+                i++;
+            }
+            if (i != expected.size()) {
+                throw new IllegalStateException( "Different tokens for line: " + text );
+            }
+            tokens += i;
+        }
+
+        for (int round = 0; round < 2; round++) { // the first round is a warm up
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                for (String text : lines) {
+                    for (String token : splitTokens( text )) {
+                        checksum += token.length();
+                    }
+                }
+            }
+            long split = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                for (String text : lines) {
+                    tokenizer.reset( text );
+                    while (tokenizer.next()) {
+                        checksum -= tokenizer.length();
+                    }
+                }
+            }
+            long streaming = System.nanoTime() - start;
+            if (round == 1) {
+                System.out.printf( "lines: %d, tokens: %d, checksum: %d%n", lines.size(), tokens, checksum );
+                System.out.printf( "split:     %.1f ns/token%n", (double) split / (tokens * iterations) );
+                System.out.printf( "streaming: %.1f ns/token (%.1fx faster)%n",
+                        (double) streaming / (tokens * iterations), (double) split / streaming );
+            }
+        }
+    }
+
+    /***
+     * The tokenizing of a review text line by regular expressions, as it was done before Tokenizer.
+     * @param line - The review text line
+     * @return The tokens of the line
+     */
+    static ArrayList<String> splitTokens(String line) {
+        ArrayList<String> words = new ArrayList<>();
+        line = line.toLowerCase();
+        for (String token : line.split( "\\s+" )) {
+            if (token.equals( "review/text:" )) {
+                continue;
+            }
+            for (String word : token.split( "[^a-z0-9]+" )) {
+                if (!word.equals( "" )) {
+                    words.add( word );
+                }
+            }
+        }
+        return words;
+    }
+}
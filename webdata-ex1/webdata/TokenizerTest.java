@@ -0,0 +1,83 @@
+package webdata;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class TokenizerTest {
+
+    private List<String> tokenize(String line)
+    {
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.reset(line);
+        List<String> tokens = new ArrayList<>();
+        while (tokenizer.next()) {
+            tokens.add(tokenizer.token());
+        }
+        return tokens;
+    }
+
+    private List<String> split(String line)
+    {
+        List<String> words = new ArrayList<>();
+        for (String token : line.toLowerCase().split("\\s+")) {
+            if (token.equals("review/text:")) {
+                continue;
+            }
+            for (String word : token.split("[^a-z0-9]+")) {
+                if (!word.equals("")) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    @Test
+    public void ShouldSplitReviewText()
+    {
+        assertEquals(Arrays.asList("i", "have", "bought", "several", "of", "the", "vitality", "canned"),
+                tokenize("review/text: I have bought several of the Vitality canned"));
+    }
+
+    @Test
+    public void ShouldProduceSameTokensAsSplit()
+    {
+        List<String> lines = Arrays.asList(
+            "review/text: Product arrived labeled as Jumbo Salted Peanuts...the peanuts were \"Jumbo\".",
+            "review/text:",
+            "review/text:    ",
+            "  review/text: leading spaces",
+            "review/text: REVIEW/TEXT: Review/Text:x review/text:",
+            "review/text: tabs\tand\u000Bvertical\ftabs\r",
+            "review/text: don't, won't -- 1/2 price!! 3.5oz <br />next",
+            "review/text: caf\u00E9 na\u00EFve \u00C9COLE",
+            "review/text: \u212Aelvin \u0130stanbul ab\u0130cd",
+            "review/text: non\u00A0breaking\u2003spaces",
+            "review/text: emoji\uD83D\uDE00inside"
+        );
+
+        for (String line : lines) {
+            assertEquals(line, split(line), tokenize(line));
+        }
+    }
+
+    @Test
+    public void ShouldReuseTokenizerForManyLines()
+    {
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.reset("review/text: " + "averyveryveryverylongtokenthatdoesnotfitthebuffer" + " end");
+        tokenizer.next();
+        assertEquals("averyveryveryverylongtokenthatdoesnotfitthebuffer", tokenizer.token());
+        tokenizer.reset("review/text: short");
+        tokenizer.next();
+        assertEquals("short", tokenizer.token());
+        assertEquals(false, tokenizer.next());
+    }
+
+}
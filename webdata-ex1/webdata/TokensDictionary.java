@@ -1,13 +1,19 @@
 package webdata;
 
 import java.io.*;
-import java.math.BigInteger;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
 public class TokensDictionary extends Dictionary {
-    private int[] totalFrequencies; // total frequency for each token
+    private final String dir;
+    private volatile int[] totalFrequencies; // total frequency for each token, read at the first use
     private int reviews;
     private int collection;
+    private ByteBuffer maxTfParts; // the mapped upper bounds of the tokens scores, null for older indexes
+    private PackedInts documentFrequencies; // the number of reviews of each token, null for older indexes
+    private ByteBuffer wordPositions; // the mapped positions of the tokens, null if the index has no positions
+    private volatile MonotonicInts wordPositionsIndex; // where the positions of each token start, read lazily
+    private TermTrie trie; // the trie of the tokens, null if the index has no trie
 
 
     /***
@@ -20,36 +26,49 @@ public class TokensDictionary extends Dictionary {
      * @param dir - The directory to read the inverted index from
      */
     public TokensDictionary(String dir) {
+        this( dir, IndexHeader.read( dir ) );
+    }
+
+    /***
+     * Reads the tokens dictionary of an index whose header was already read.
+     * @param dir - The directory to read the inverted index from
+     * @param header - The header of the index
+     */
+    public TokensDictionary(String dir, IndexHeader header) {
         K = 24;
+        version = header.getVersion();
+        codec = header.getPostingCodec();
+        numbersPerPosting = 2;
         concatenation = "";
-        gamma = new Gamma();
+        this.dir = dir;
         try {
-            DataInputStream infoBlocksFile = new DataInputStream( new FileInputStream( dir +
-                    "\\infoBlocks.bin" ) );
-            DataInputStream sizesFile = new DataInputStream( new FileInputStream(
-                    dir + "\\sizes.bin" ) );
-            DataInputStream positionsFile = new DataInputStream( new FileInputStream( dir +
-                    "\\positions.bin" ) );
-            File totalFrequenciesFile = new File( dir + "\\frequencies.bin" );
+            IntBuffer infoBlocksFile = mapInts( dir + "\\infoBlocks.bin" );
             BufferedReader longStringFile = new BufferedReader( new FileReader( dir +
                     "\\longString.txt" ) );
-            tokensSize = infoBlocksFile.readInt();
+            tokensSize = infoBlocksFile.get();
             blocks = (int) Math.ceil( (double) tokensSize / K );
-            reviews = infoBlocksFile.readInt();
-            collection = infoBlocksFile.readInt();
-            tokenPointer = new int[blocks];
+            reviews = infoBlocksFile.get();
+            collection = infoBlocksFile.get();
             readInfoBlockFile( infoBlocksFile );
-            sizeToken = new int[tokensSize];
-            prefixSize = new int[tokensSize];
-            readSizesFile( sizesFile );
-            postingLists = new int[tokensSize];
-            readPositionsFile( positionsFile );
-            totalFrequencies = new int[tokensSize];
-            readFrequenciesFile( totalFrequenciesFile );
+            sizeToken = new byte[tokensSize];
+            prefixSize = new byte[tokensSize];
+            readSizesFile( mapInts( dir + "\\sizes.bin" ) );
+            readPositionsFile( mapInts( dir + "\\positions.bin" ) );
             readLongString( longStringFile );
-            infoBlocksFile.close();
-            sizesFile.close();
-            positionsFile.close();
+            postings = mapFile( dir + "\\postingLists.bin" );
+            if (new File( dir + "\\maxScores.bin" ).exists()) {
+                maxTfParts = mapFile( dir + "\\maxScores.bin" );
+            }
+            readDocumentFrequenciesFile( dir );
+            if (header.hasPositions()) {
+                wordPositions = mapFile( dir + "\\wordPositions.bin" );
+            }
+            if (header.hasPerfectHash()) {
+                hash = MinimalPerfectHash.read( dir + "\\tokensHash.bin" );
+            }
+            if (header.hasTermTrie()) {
+                trie = TermTrie.read( dir + "\\tokensTrie.bin" );
+            }
             longStringFile.close();
 
         } catch (Exception e) {
@@ -58,38 +77,74 @@ public class TokensDictionary extends Dictionary {
     }
 
     /***
-     * Reads the total frequencies of each token into an array field.
+     * Maps the number of reviews of each token, if the index has them.
+     * @param dir - The directory to read the inverted index from
+     */
+    private void readDocumentFrequenciesFile(String dir) throws IOException {
+        if (!new File( dir + "\\documentFrequencies.bin" ).exists()) {
+            return;
+        }
+        ByteBuffer file = mapFile( dir + "\\documentFrequencies.bin" );
+        // the number of tokens comes first, then the number of bits of each number
+        documentFrequencies = new PackedInts( file, 64, file.getInt( 4 ) );
+    }
+
+    /***
+     * The total frequencies are read at their first use, as only some queries need them. Threads that use
+     * them first at the same time may each read them, which gives the same array.
+     * @return The total frequency of each token
+     */
+    private int[] getTotalFrequencies() {
+        int[] frequencies = totalFrequencies;
+        if (frequencies == null) {
+            frequencies = readFrequenciesFile( new File( dir + "\\frequencies.bin" ) );
+            totalFrequencies = frequencies;
+        }
+        return frequencies;
+    }
+
+    /***
+     * Reads the total frequencies of each token. The codes of the legacy version are each padded to whole
+     * bytes, after a zero byte and a byte that counts the padding, as in the legacy posting lists.
      * @param totalFrequenciesFile - The file in which the frequencies are written.
+     * @return The total frequency of each token
      */
-    private void readFrequenciesFile(File totalFrequenciesFile) {
+    private int[] readFrequenciesFile(File totalFrequenciesFile) {
+        int[] frequencies = new int[tokensSize];
         try {
-            String frequencies = getAllBytes( totalFrequenciesFile );
-            String[] totalFrequenciesCodes = getAllCodes( frequencies );
-            int i = 0;
-            for (String code : totalFrequenciesCodes) {
-                int freq = gamma.decode( code );
-                totalFrequencies[i] = freq;
-                i++;
+            ByteBuffer file = mapFile( totalFrequenciesFile.getPath() );
+            BitInputStream bits = new BitInputStream( file, 0, file.limit() );
+            int position = 0;
+            for (int i = 0; i < tokensSize; i++) {
+                if (version == IndexHeader.LEGACY_VERSION) {
+                    int padding = Integer.bitCount( file.get( position + 1 ) & 0xFF );
+                    bits.seek( 8L * (position + 2) + padding );
+                }
+                frequencies[i] = bits.readGamma();
+                position = (int) ((bits.position() + 7) >>> 3);
             }
         } catch (Exception e) {
             System.out.println( "Error - frequencies" );
         }
-
+        return frequencies;
     }
 
     /***
-     * This function read all bytes of the given file
-     * @param file - The file to read bytes from
-     * @return - concatenation string of all bytes read from the given file
+     * The index of the positions is read at its first use, as only phrase and proximity queries need it.
+     * @return The position of the positions of each token
      */
-    private String getAllBytes(File file) {
-        try {
-            byte[] bytes = Files.readAllBytes( file.toPath() );
-            return new BigInteger( bytes ).toString( 2 );
-        } catch (Exception e) {
-            System.out.println( "Error - getAllBytes!!" );
+    private MonotonicInts getWordPositionsIndex() {
+        MonotonicInts index = wordPositionsIndex;
+        if (index == null) {
+            try {
+                index = MonotonicInts.read( mapInts( dir + "\\wordPositionsIndex.bin" ), tokensSize );
+            } catch (Exception e) {
+                System.out.println( "Error - word positions index" );
+                index = new MonotonicInts( new int[tokensSize], tokensSize );
+            }
+            wordPositionsIndex = index;
         }
-        return "";
+        return index;
     }
 
     /***
@@ -98,7 +153,31 @@ public class TokensDictionary extends Dictionary {
      * @return The index of the given token in the dictionary
      */
     public int searchToken(String token) {
-        return searchTokenRecursive( 0, blocks - 1, token.toLowerCase() );
+        return searchTerm( token, true );
+    }
+
+    /***
+     * Creates an iterator over the posting list of a token, which can also read the positions of the token
+     * if the index has positions
+     * @param index - Index of the token
+     * @return An iterator positioned before the first posting of the token
+     */
+    @Override
+    public PostingIterator postingIterator(int index) {
+        PostingIterator iterator = super.postingIterator( index );
+        if (wordPositions != null) {
+            MonotonicInts positionsIndex = getWordPositionsIndex();
+            int end = index < tokensSize - 1 ? positionsIndex.get( index + 1 ) : wordPositions.limit();
+            iterator.withPositions( wordPositions, positionsIndex.get( index ), end );
+        }
+        return iterator;
+    }
+
+    /***
+     * @return The trie of the tokens, or null if the index has no trie
+     */
+    public TermTrie getTrie() {
+        return trie;
     }
 
     /***
@@ -120,7 +199,24 @@ public class TokensDictionary extends Dictionary {
      * @return The frequency of the given token's index
      */
     public int getFrequencyOfToken(int index) {
-        return totalFrequencies[index];
+        return getTotalFrequencies()[index];
+    }
+
+    /***
+     * @param index - Index of desired token
+     * @return The number of reviews containing the given token's index, read from the posting list of the
+     * token for indexes written without it
+     */
+    public int getDocumentFrequency(int index) {
+        return documentFrequencies != null ? documentFrequencies.get( index ) : postingIterator( index ).size();
+    }
+
+    /***
+     * @param index - Index of desired token
+     * @return An upper bound on the term frequency part of the BM25 score of the token in any review
+     */
+    public float getMaxTfPart(int index) {
+        return maxTfParts != null ? maxTfParts.getFloat( index * 4 ) : Bm25.MAX_TF_PART;
     }
 
 }
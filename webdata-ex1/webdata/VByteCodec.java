@@ -0,0 +1,69 @@
+package webdata;
+
+import java.io.IOException;
+
+/***
+ * Writes the gap and the frequency of each posting in turn as variable byte codes: seven bits of the number
+ * in each byte, the lowest ones first, with the high bit of the byte set when more bytes follow.
+ */
+public class VByteCodec implements PostingCodec {
+
+    @Override
+    public int id() {
+        return VBYTE;
+    }
+
+    @Override
+    public String name() {
+        return "vbyte";
+    }
+
+    @Override
+    public boolean isByteAligned() {
+        return true;
+    }
+
+    @Override
+    public void writeBlock(BitOutputStream out, int[] gaps, int[] freqs, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            write( out, gaps[i] );
+            if (freqs != null) {
+                write( out, freqs[i] );
+            }
+        }
+    }
+
+    /***
+     * Writes a non negative number as a variable byte code.
+     */
+    static void write(BitOutputStream out, int number) throws IOException {
+        while ((number & ~0x7F) != 0) {
+            out.writeBits( 0x80 | (number & 0x7F), 8 );
+            number >>>= 7;
+        }
+        out.writeBits( number, 8 );
+    }
+
+    @Override
+    public void readBlock(BitInputStream in, int[] gaps, int[] freqs, int count) {
+        for (int i = 0; i < count; i++) {
+            gaps[i] = read( in );
+            if (freqs != null) {
+                freqs[i] = read( in );
+            }
+        }
+    }
+
+    /***
+     * Reads a variable byte code.
+     */
+    static int read(BitInputStream in) {
+        int b = in.readByte();
+        int number = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = in.readByte();
+            number |= (b & 0x7F) << shift;
+        }
+        return number;
+    }
+}
@@ -0,0 +1,70 @@
+package webdata;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/***
+ * Measures how the throughput of building the index scales with the number of tokenizing threads.
+ * Usage: WriterBenchmark inputFile dir [maxThreads]
+ * For each number of threads the index is built into dir, and the index files are compared to the ones
+ * built by a single thread, so a different review id order is reported.
+ */
+public class WriterBenchmark {
+    private static final int WARMUP = 1;
+    private static final int REPEATS = 3;
+
+    public static void main(String[] args) throws Exception {
+        String inputFile = args[0];
+        String dir = args[1];
+        int maxThreads = args.length > 2 ? Integer.parseInt( args[2] ) :
+                Runtime.getRuntime().availableProcessors();
+        String[] indexFiles = {"\\postingLists.bin", "\\productPosting.bin", "\\frequencies.bin",
+                "\\reviewLengths.bin", "\\longString.txt", "\\positions.bin"};
+
+        SlowIndexWriter writer = new SlowIndexWriter( Long.MAX_VALUE, 1 );
+        writer.slowWrite( inputFile, dir );
+        int reviews = new IndexReader( dir ).getNumberOfReviews();
+        byte[][] expected = readFiles( dir, indexFiles );
+        writer.removeIndex( dir );
+
+        double baseline = 0;
+        System.out.println( "threads\tms\treviews/sec\tspeedup\tsame index" );
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            writer = new SlowIndexWriter( Long.MAX_VALUE, threads );
+            for (int i = 0; i < WARMUP; i++) {
+                writer.slowWrite( inputFile, dir );
+                writer.removeIndex( dir );
+            }
+            long best = Long.MAX_VALUE;
+            boolean same = true;
+            for (int i = 0; i < REPEATS; i++) {
+                long start = System.nanoTime();
+                writer.slowWrite( inputFile, dir );
+                best = Math.min( best, System.nanoTime() - start );
+                same &= Arrays.deepEquals( expected, readFiles( dir, indexFiles ) );
+                writer.removeIndex( dir );
+            }
+            double throughput = reviews / (best / 1e9);
+            if (threads == 1) {
+                baseline = throughput;
+            }
+            System.out.printf( "%d\t%d\t%.0f\t%.2f\t%b%n", threads, best / 1000000, throughput,
+                    throughput / baseline, same );
+        }
+    }
+
+    /***
+     * Reads the given index files.
+     * @param dir - The directory of the index
+     * @param names - The names of the files to read
+     * @return The content of each file
+     */
+    private static byte[][] readFiles(String dir, String[] names) throws Exception {
+        byte[][] files = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            files[i] = Files.readAllBytes( new File( dir + names[i] ).toPath() );
+        }
+        return files;
+    }
+}